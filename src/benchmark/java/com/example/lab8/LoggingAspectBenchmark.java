@@ -0,0 +1,138 @@
+package com.example.lab8.aspect;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.example.lab8.config.LoggingAspectProperties;
+import com.example.lab8.controller.LocationController;
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.service.ExportService;
+import com.example.lab8.service.LocationService;
+import com.example.lab8.service.ResourceVersions;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the per-request cost of the controller logging advice on {@code GET /api/location}
+ * with 1000 locations: the former eager INFO logging against the sampled, lazily rendered one.
+ * Log output is fully encoded and written to a discarding stream so formatting is included.
+ * Run with: {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.lab8.aspect.LoggingAspectBenchmark}
+ */
+public class LoggingAspectBenchmark {
+
+    private static final int LOCATIONS = 1000;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    public static void main(String[] args) {
+        LocationService service = mock(LocationService.class);
+        when(service.getAll(LocationView.FULL)).thenReturn(List.copyOf(locations()));
+        LocationController target = new LocationController(service, mock(ExportService.class),
+                new ResourceVersions());
+
+        discardOutput(LegacyLoggingAspect.class.getName());
+        discardOutput(LoggingAspect.class.getName());
+        discardOutput(LocationController.class.getName());
+
+        LoggingAspectProperties fullLogging = new LoggingAspectProperties();
+        LoggingAspectProperties sampled = new LoggingAspectProperties();
+        sampled.setDefaultSampleRate(0.01);
+
+        report("before: eager INFO rendering", proxy(target, new LegacyLoggingAspect()));
+        report("after: lazy, size-capped, sample rate 1.0", proxy(target, new LoggingAspect(fullLogging)));
+        report("after: lazy, size-capped, sample rate 0.01", proxy(target, new LoggingAspect(sampled)));
+    }
+
+    private static void report(String name, LocationController controller) {
+        // No If-None-Match header, so every call renders the full list.
+        WebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/location"));
+        for (int i = 0; i < WARMUP; i++) {
+            controller.getAll(null, null, request);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            controller.getAll(null, null, request);
+        }
+        long perCall = (System.nanoTime() - start) / ITERATIONS;
+        System.out.printf("%-45s %,10d ns/request%n", name, perCall);
+    }
+
+    private static LocationController proxy(LocationController target, Object aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return factory.getProxy();
+    }
+
+    private static void discardOutput(String loggerName) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger - %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        ch.qos.logback.classic.Logger logger = context.getLogger(loggerName);
+        logger.detachAndStopAllAppenders();
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+    }
+
+    private static List<Location> locations() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            Location location = new Location("Location " + i, "Country", 53.9, 27.6);
+            location.setId((long) i);
+            SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52");
+            sunriseSunset.setId((long) i);
+            location.getSunriseSunsets().add(sunriseSunset);
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    // The controller advice as it was before sampling and lazy rendering.
+    @Aspect
+    static class LegacyLoggingAspect {
+
+        private static final Logger logger = LoggerFactory.getLogger(LegacyLoggingAspect.class);
+
+        @Before("execution(* com.example.lab8.controller.*.*(..))")
+        public void logBeforeController(JoinPoint joinPoint) {
+            logger.info("Entering controller method: {} with arguments: {}",
+                    joinPoint.getSignature().getName(), Arrays.toString(joinPoint.getArgs()));
+        }
+
+        @AfterReturning(pointcut = "execution(* com.example.lab8.controller.*.*(..))", returning = "result")
+        public void logAfterController(JoinPoint joinPoint, Object result) {
+            logger.info("Exiting controller method: {} with result: {}",
+                    joinPoint.getSignature().getName(), result);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.lab8.controller;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load generator for comparing the platform and virtual thread execution modes.
+ * Start the application once with {@code VIRTUAL_THREADS=false} and once with {@code VIRTUAL_THREADS=true}
+ * (Java 21+), against the same database and the same {@code DB_POOL_SIZE}, and run this against each.
+ * The default paths skip the entity caches, so every request blocks on JDBC.
+ * Run with: {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.lab8.controller.ThreadModeBenchmark -Dexec.args="http://localhost:8080 platform"}
+ * Optional further arguments: comma-separated concurrency levels, seconds per level, comma-separated paths.
+ */
+public class ThreadModeBenchmark {
+
+    private static final String DEFAULT_PATHS = "/api/location/nearby?lat=52&lon=21&k=10,"
+            + "/api/sunrise-sunset/by-date-range?from=2025-06-01&to=2025-06-07";
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String label = args.length > 1 ? args[1] : "server";
+        int[] levels = Arrays.stream((args.length > 2 ? args[2] : "16,64,256,1024").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        List<URI> uris = Arrays.stream((args.length > 4 ? args[4] : DEFAULT_PATHS).split(","))
+                .map(path -> URI.create(baseUrl + path))
+                .toList();
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+
+        run(client, uris, levels[0], WARMUP_SECONDS);
+        System.out.printf("%-10s %8s %12s %10s %10s %10s %8s%n",
+                "mode", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (int clients : levels) {
+            Result result = run(client, uris, clients, seconds);
+            System.out.printf("%-10s %8d %12.1f %10.2f %10.2f %10.2f %8d%n", label, clients,
+                    result.latencies.length / (double) seconds, percentile(result.latencies, 0.50),
+                    percentile(result.latencies, 0.99), percentile(result.latencies, 1.0), result.errors);
+        }
+        System.exit(0);
+    }
+
+    // Each client sends its next request as soon as the previous response has been read.
+    private static Result run(HttpClient client, List<URI> uris, int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int offset = c;
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                int errors = 0;
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                    HttpRequest request = HttpRequest.newBuilder(uris.get(i % uris.size()))
+                            .timeout(Duration.ofSeconds(60))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors++;
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errors++;
+                        continue;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return new Result(Arrays.copyOf(latencies, count), errors);
+            }));
+        }
+        long[] all = new long[0];
+        int errors = 0;
+        for (Future<Result> future : futures) {
+            Result result = future.get();
+            int from = all.length;
+            all = Arrays.copyOf(all, from + result.latencies.length);
+            System.arraycopy(result.latencies, 0, all, from, result.latencies.length);
+            errors += result.errors;
+        }
+        executor.shutdown();
+        Arrays.sort(all);
+        return new Result(all, errors);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(long[] latencies, int errors) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.lab8.aspect;
+
+import org.hibernate.Hibernate;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+// Defers rendering of a logged value until the logger actually formats the message,
+// and keeps the rendered form small: large collections collapse to their size.
+final class LogValue {
+
+    private final Object value;
+    private final int maxCollectionItems;
+    private final int maxLength;
+
+    LogValue(Object value, int maxCollectionItems, int maxLength) {
+        this.value = value;
+        this.maxCollectionItems = maxCollectionItems;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        render(value, out);
+        return out.length() > maxLength
+                ? out.substring(0, maxLength) + "...(" + out.length() + " chars)"
+                : out.toString();
+    }
+
+    private void render(Object value, StringBuilder out) {
+        if (out.length() > maxLength) {
+            return;
+        }
+        if (value == null) {
+            out.append("null");
+        } else if (!Hibernate.isInitialized(value)) {
+            out.append(value.getClass().getSimpleName()).append("[not loaded]");
+        } else if (value instanceof ResponseEntity<?> response) {
+            out.append("ResponseEntity[status=").append(response.getStatusCode().value()).append(", body=");
+            render(response.getBody(), out);
+            out.append(']');
+        } else if (value instanceof Object[] array) {
+            renderItems(array.getClass().getSimpleName(), Arrays.asList(array), out);
+        } else if (value instanceof Collection<?> collection) {
+            renderItems(collection.getClass().getSimpleName(), collection, out);
+        } else if (value instanceof Map<?, ?> map) {
+            renderItems(map.getClass().getSimpleName(), map.entrySet(), out);
+        } else {
+            try {
+                out.append(value);
+            } catch (RuntimeException e) {
+                out.append(value.getClass().getSimpleName()).append("[unrenderable: ")
+                        .append(e.getClass().getSimpleName()).append(']');
+            }
+        }
+    }
+
+    private void renderItems(String type, Collection<?> items, StringBuilder out) {
+        if (items.size() > maxCollectionItems) {
+            out.append(type).append("[size=").append(items.size()).append(']');
+            return;
+        }
+        out.append('[');
+        boolean first = true;
+        for (Object item : items) {
+            if (!first) {
+                out.append(", ");
+            }
+            render(item, out);
+            first = false;
+        }
+        out.append(']');
+    }
+}
@@ -1,55 +1,57 @@
 package com.example.lab8.aspect;
 
-import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.AfterReturning;
-import org.aspectj.lang.annotation.AfterThrowing;
+import com.example.lab8.config.LoggingAspectProperties;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
-
 @Aspect
 @Component
+@RequiredArgsConstructor
 public class LoggingAspect {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingAspect.class);
 
-    @Before("execution(* com.example.lab8.controller.*.*(..))")
-    public void logBeforeController(JoinPoint joinPoint) {
-        logger.info("Entering controller method: {} with arguments: {}",
-                joinPoint.getSignature().getName(), Arrays.toString(joinPoint.getArgs()));
-    }
-
-    @AfterReturning(pointcut = "execution(* com.example.lab8.controller.*.*(..))", returning = "result")
-    public void logAfterController(JoinPoint joinPoint, Object result) {
-        logger.info("Exiting controller method: {} with result: {}",
-                joinPoint.getSignature().getName(), result);
-    }
+    private final LoggingAspectProperties properties;
 
-    @AfterThrowing(pointcut = "execution(* com.example.lab8.controller.*.*(..))", throwing = "exception")
-    public void logAfterThrowingController(JoinPoint joinPoint, Throwable exception) {
-        logger.error("Exception in controller method: {} with cause: {}",
-                joinPoint.getSignature().getName(), exception.getMessage(), exception);
+    @Around("execution(* com.example.lab8.controller.*.*(..))")
+    public Object logController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return log(joinPoint, "controller", Level.INFO);
     }
 
-    @Before("execution(* com.example.lab8.service.*.*(..))")
-    public void logBeforeService(JoinPoint joinPoint) {
-        logger.debug("Entering service method: {} with arguments: {}",
-                joinPoint.getSignature().getName(), Arrays.toString(joinPoint.getArgs()));
+    @Around("execution(* com.example.lab8.service.*.*(..))")
+    public Object logService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return log(joinPoint, "service", Level.DEBUG);
     }
 
-    @AfterReturning(pointcut = "execution(* com.example.lab8.service.*.*(..))", returning = "result")
-    public void logAfterService(JoinPoint joinPoint, Object result) {
-        logger.debug("Exiting service method: {} with result: {}",
-                joinPoint.getSignature().getName(), result);
+    private Object log(ProceedingJoinPoint joinPoint, String layer, Level level) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        boolean sampled = logger.isEnabledForLevel(level)
+                && properties.sample(joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + method);
+        try {
+            if (sampled) {
+                logger.atLevel(level).log("Entering {} method: {} with arguments: {}",
+                        layer, method, render(joinPoint.getArgs()));
+            }
+            Object result = joinPoint.proceed();
+            if (sampled) {
+                logger.atLevel(level).log("Exiting {} method: {} with result: {}",
+                        layer, method, render(result));
+            }
+            return result;
+        } catch (Throwable exception) {
+            logger.error("Exception in {} method: {} with cause: {}",
+                    layer, method, exception.getMessage(), exception);
+            throw exception;
+        }
     }
 
-    @AfterThrowing(pointcut = "execution(* com.example.lab8.service.*.*(..))", throwing = "exception")
-    public void logAfterThrowingService(JoinPoint joinPoint, Throwable exception) {
-        logger.error("Exception in service method: {} with cause: {}",
-                joinPoint.getSignature().getName(), exception.getMessage(), exception);
+    private LogValue render(Object value) {
+        return new LogValue(value, properties.getMaxCollectionItems(), properties.getMaxLength());
     }
-}
\ No newline at end of file
+}
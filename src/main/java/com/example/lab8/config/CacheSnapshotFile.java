@@ -0,0 +1,247 @@
+package com.example.lab8.config;
+
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Binary image of the location and sunrise/sunset caches, written and read through memory-mapped
+// file channels. Every entity is stored once in a dictionary and entries refer to it by index, so
+// lists sharing rows (all, by date, by id, pages) cost four bytes per row after the first.
+public final class CacheSnapshotFile {
+
+    private static final int MAGIC = 0x4C384353;
+    // Bumped whenever the layout or the cached entity shape changes; other versions are ignored.
+    private static final int FORMAT_VERSION = 1;
+    private static final int INITIAL_MAPPING = 1 << 20;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    public record Snapshot(Instant watermark, List<EntityCacheHolder.Entry<Location>> locations,
+                           List<EntityCacheHolder.Entry<SunriseSunset>> sunriseSunsets) {
+    }
+
+    private CacheSnapshotFile() {
+    }
+
+    // Written next to the target and moved over it, so a reader never sees a partial file.
+    public static long write(Path path, Snapshot snapshot) throws IOException {
+        Map<Long, Integer> sunriseSunsetIndex = new HashMap<>();
+        List<SunriseSunset> sunriseSunsets = new ArrayList<>();
+        Map<Long, Integer> locationIndex = new HashMap<>();
+        List<Location> locations = new ArrayList<>();
+        for (EntityCacheHolder.Entry<SunriseSunset> entry : snapshot.sunriseSunsets()) {
+            entry.values().forEach(row -> index(row.getId(), row, sunriseSunsetIndex, sunriseSunsets));
+        }
+        for (EntityCacheHolder.Entry<Location> entry : snapshot.locations()) {
+            for (Location location : entry.values()) {
+                index(location.getId(), location, locationIndex, locations);
+                location.getSunriseSunsets()
+                        .forEach(row -> index(row.getId(), row, sunriseSunsetIndex, sunriseSunsets));
+            }
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long size;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedOutput out = new MappedOutput(channel);
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putLong(snapshot.watermark().toEpochMilli());
+
+            out.putInt(sunriseSunsets.size());
+            for (SunriseSunset row : sunriseSunsets) {
+                out.putLong(row.getId());
+                out.putLong(row.getDate() != null ? row.getDate().toEpochDay() : NULL_DATE);
+                out.putDouble(row.getLatitude());
+                out.putDouble(row.getLongitude());
+                out.putString(row.getSunrise());
+                out.putString(row.getSunset());
+            }
+            out.putInt(locations.size());
+            for (Location location : locations) {
+                out.putLong(location.getId());
+                out.putString(location.getName());
+                out.putString(location.getCountry());
+                out.putDouble(location.getLatitude());
+                out.putDouble(location.getLongitude());
+                out.putInt(location.getSunriseSunsets().size());
+                for (SunriseSunset row : location.getSunriseSunsets()) {
+                    out.putInt(sunriseSunsetIndex.get(row.getId()));
+                }
+            }
+            writeEntries(out, snapshot.locations(), locationIndex, Location::getId);
+            writeEntries(out, snapshot.sunriseSunsets(), sunriseSunsetIndex, SunriseSunset::getId);
+            size = out.finish();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    public static Snapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cache snapshot is too large: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache snapshot format");
+            }
+            Instant watermark = Instant.ofEpochMilli(in.getLong());
+
+            List<SunriseSunset> sunriseSunsets = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                long id = in.getLong();
+                long epochDay = in.getLong();
+                SunriseSunset row = new SunriseSunset(epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null,
+                        getDouble(in), getDouble(in), getString(in), getString(in));
+                row.setId(id);
+                sunriseSunsets.add(row);
+            }
+            List<Location> locations = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                long id = in.getLong();
+                Location location = new Location(getString(in), getString(in), getDouble(in), getDouble(in));
+                location.setId(id);
+                for (int j = in.getInt(); j > 0; j--) {
+                    location.getSunriseSunsets().add(sunriseSunsets.get(in.getInt()));
+                }
+                locations.add(location);
+            }
+            return new Snapshot(watermark, readEntries(in, locations), readEntries(in, sunriseSunsets));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Cache snapshot is truncated or corrupt", e);
+        }
+    }
+
+    private static <T> void index(Long id, T value, Map<Long, Integer> index, List<T> rows) {
+        if (index.putIfAbsent(id, rows.size()) == null) {
+            rows.add(value);
+        }
+    }
+
+    private static <T> void writeEntries(MappedOutput out, List<EntityCacheHolder.Entry<T>> entries,
+                                         Map<Long, Integer> index, Function<T, Long> id)
+            throws IOException {
+        out.putInt(entries.size());
+        for (EntityCacheHolder.Entry<T> entry : entries) {
+            out.putString(entry.key());
+            out.putInt(entry.tags().size());
+            for (String tag : entry.tags()) {
+                out.putString(tag);
+            }
+            out.putInt(entry.values().size());
+            for (T value : entry.values()) {
+                out.putInt(index.get(id.apply(value)));
+            }
+        }
+    }
+
+    private static <T> List<EntityCacheHolder.Entry<T>> readEntries(MappedByteBuffer in, List<T> rows) {
+        List<EntityCacheHolder.Entry<T>> entries = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            String key = getString(in);
+            Set<String> tags = new HashSet<>();
+            for (int j = in.getInt(); j > 0; j--) {
+                tags.add(getString(in));
+            }
+            List<T> values = new ArrayList<>();
+            for (int j = in.getInt(); j > 0; j--) {
+                values.add(rows.get(in.getInt()));
+            }
+            entries.add(new EntityCacheHolder.Entry<>(key, values, tags));
+        }
+        return entries;
+    }
+
+    // NaN stands for a missing coordinate; real coordinates are never NaN.
+    private static Double getDouble(MappedByteBuffer in) {
+        double value = in.getDouble();
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static String getString(MappedByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Maps the file in growing windows; each new window starts where the previous one ended.
+    private static final class MappedOutput {
+
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long offset;
+
+        MappedOutput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_MAPPING);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(Double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value != null ? value : Double.NaN);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        // Flushes the mapped pages and cuts the file to the bytes actually written.
+        long finish() throws IOException {
+            buffer.force();
+            long size = offset + buffer.position();
+            channel.truncate(size);
+            return size;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            long position = offset + buffer.position();
+            buffer.force();
+            long window = Math.min(Math.max(2L * buffer.capacity(), bytes), Integer.MAX_VALUE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, window);
+            offset = position;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.lab8.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public abstract class EntityCacheHolder<T> implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCacheHolder.class);
+
+    // Entries listing every row of a table (or its tail); they change whenever a row is created.
+    public static final String MEMBERSHIP_TAG = "membership";
+
+    private final String name;
+    private final Cache<String, List<T>> cache;
+
+    // Dependency index: which cache keys must go when a given tag (entity id, date, ...) changes.
+    // Both maps are only mutated while the owning cache entry is being computed, so they stay
+    // consistent with the cache contents.
+    private final Map<String, Set<String>> keysByTag = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+
+    // Loads currently running against the database; concurrent misses on the same key join them.
+    private final Map<String, CompletableFuture<List<T>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    // Keys read through getOrLoadHot, with the loader needed to rebuild them off the request thread.
+    private final Map<String, HotKey<T>> hotKeys = new ConcurrentHashMap<>();
+    private final LongAdder refreshes = new LongAdder();
+    private volatile Executor refreshExecutor;
+
+    protected EntityCacheHolder(String name, long maximumWeight, Duration expireAfterWrite) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, List<T> value) -> weigh(value))
+                .expireAfterWrite(expireAfterWrite)
+                .evictionListener((String key, List<T> value, RemovalCause cause) -> untrack(key))
+                .recordStats()
+                .build();
+    }
+
+    public List<T> get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public List<T> getOrLoad(String key, Supplier<List<T>> loader, String... extraTags) {
+        return getOrLoad(key, loader, values -> List.of(extraTags));
+    }
+
+    // Variant for entries whose extra dependencies are only known once the values are loaded.
+    public List<T> getOrLoad(String key, Supplier<List<T>> loader, Function<List<T>, Collection<String>> extraTags) {
+        List<T> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<List<T>> flight = new CompletableFuture<>();
+        CompletableFuture<List<T>> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalescedLoads.increment();
+            return await(running);
+        }
+        loads.increment();
+        return load(key, flight, loader, extraTags);
+    }
+
+    // Like getOrLoad, but the key is also kept warm: once a refresh executor is set, it is
+    // reloaded in the background after every invalidation and before it expires.
+    public List<T> getOrLoadHot(String key, Supplier<List<T>> loader, String... extraTags) {
+        return getOrLoadHot(key, loader, values -> List.of(extraTags));
+    }
+
+    // Hot variant of the values-derived tags; they are derived again on every background reload.
+    public List<T> getOrLoadHot(String key, Supplier<List<T>> loader,
+                                Function<List<T>, Collection<String>> extraTags) {
+        hotKeys.put(key, new HotKey<>(loader, extraTags, System.currentTimeMillis()));
+        return getOrLoad(key, loader, extraTags);
+    }
+
+    // Point-in-time copy of the entries and their dependency tags; put restores one of them.
+    public List<Entry<T>> entries() {
+        List<Entry<T>> entries = new ArrayList<>();
+        cache.asMap().forEach((key, values) ->
+                entries.add(new Entry<>(key, values, tagsByKey.getOrDefault(key, Set.of()))));
+        return entries;
+    }
+
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    // Schedules a reload of every hot key that is missing or older than aheadRatio of its
+    // time-to-live. Keys not read within idleTimeout, or beyond the maxKeys most recently read,
+    // stop being refreshed. Returns the number of reloads scheduled.
+    public int refreshAhead(double aheadRatio, Duration idleTimeout, int maxKeys) {
+        long now = System.currentTimeMillis();
+        List<String> recent = hotKeys.entrySet().stream()
+                .filter(entry -> now - entry.getValue().lastRead() <= idleTimeout.toMillis())
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, HotKey<T>> entry) -> entry.getValue().lastRead()).reversed())
+                .limit(maxKeys)
+                .map(Map.Entry::getKey)
+                .toList();
+        hotKeys.keySet().retainAll(Set.copyOf(recent));
+        Duration threshold = cache.policy().expireAfterWrite()
+                .map(expiration -> Duration.ofNanos((long) (expiration.getExpiresAfter().toNanos() * aheadRatio)))
+                .orElse(Duration.ZERO);
+        int scheduled = 0;
+        for (String key : recent) {
+            Optional<Duration> age = cache.policy().expireAfterWrite().flatMap(expiration -> expiration.ageOf(key));
+            if ((age.isEmpty() || age.get().compareTo(threshold) >= 0) && reloadInBackground(key)) {
+                scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    public void put(String key, List<T> values, String... extraTags) {
+        Set<String> tags = new HashSet<>(dependencies(values));
+        tags.addAll(List.of(extraTags));
+        cache.asMap().compute(key, (k, previous) -> {
+            untrack(k);
+            track(k, tags);
+            return values;
+        });
+    }
+
+    public void invalidate(String... keys) {
+        afterCommit(() -> {
+            removeKeys(keys);
+            reloadHot(List.of(keys));
+        });
+    }
+
+    public void invalidateTags(Collection<String> tags) {
+        Set<String> snapshot = Set.copyOf(tags);
+        afterCommit(() -> {
+            // Loads in flight have not registered their tags yet, so none of them may be cached.
+            inFlight.clear();
+            Set<String> keys = new HashSet<>();
+            for (String tag : snapshot) {
+                Set<String> tagged = keysByTag.get(tag);
+                if (tagged != null) {
+                    keys.addAll(tagged);
+                }
+            }
+            removeKeys(keys.toArray(String[]::new));
+            reloadHot(keys);
+        });
+    }
+
+    public void invalidateMembership() {
+        invalidateTags(List.of(MEMBERSHIP_TAG));
+    }
+
+    public void clear() {
+        afterCommit(() -> {
+            inFlight.clear();
+            removeKeys(cache.asMap().keySet().toArray(String[]::new));
+            reloadHot(hotKeys.keySet());
+        });
+    }
+
+    public Map<String, Object> getStatistics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedWeight", stats.evictionWeight());
+        result.put("size", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction -> {
+            result.put("weight", eviction.weightedSize().orElse(0L));
+            result.put("maximumWeight", eviction.getMaximum());
+        });
+        result.put("dependencyTags", keysByTag.size());
+        result.put("loads", loads.sum());
+        result.put("coalescedLoads", coalescedLoads.sum());
+        result.put("inFlight", inFlight.size());
+        result.put("hotKeys", hotKeys.size());
+        result.put("refreshes", refreshes.sum());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cache.loads", loads, LongAdder::sum)
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cache.loads.coalesced", coalescedLoads, LongAdder::sum)
+                .description("Cache misses served by joining a load already in flight")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    // Weight is the number of entities an entry pins on the heap.
+    protected int weigh(List<T> values) {
+        return Math.max(1, values.size());
+    }
+
+    // Tags derived from the cached values themselves; callers can add more on put.
+    protected Set<String> dependencies(List<T> values) {
+        return Set.of();
+    }
+
+    private List<T> load(String key, CompletableFuture<List<T>> flight, Supplier<List<T>> loader,
+                         Function<List<T>, Collection<String>> extraTags) {
+        try {
+            List<T> values = loader.get();
+            // An invalidation while loading detaches the flight: the result is still returned
+            // to its callers, but it is not cached because it may predate the write.
+            if (inFlight.remove(key, flight)) {
+                put(key, values, extraTags.apply(values).toArray(String[]::new));
+            }
+            flight.complete(values);
+            return values;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Dropped hot keys are reloaded right away, so the next reader joins that load, or finds the
+    // entry already rebuilt, instead of querying on its own.
+    private void reloadHot(Collection<String> keys) {
+        for (String key : keys) {
+            if (hotKeys.containsKey(key)) {
+                reloadInBackground(key);
+            }
+        }
+    }
+
+    // The flight is registered before the task runs: readers of a missing entry join it, while
+    // readers of a present entry keep getting the current value until it is replaced.
+    private boolean reloadInBackground(String key) {
+        Executor executor = refreshExecutor;
+        HotKey<T> hot = hotKeys.get(key);
+        if (executor == null || hot == null) {
+            return false;
+        }
+        CompletableFuture<List<T>> flight = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, flight) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    load(key, flight, hot.loader(), hot.extraTags());
+                } catch (RuntimeException e) {
+                    // Readers that joined get the failure; the next refresh tick tries again.
+                    logger.warn("Background reload of {} cache key {} failed", name, key, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            return false;
+        }
+        refreshes.increment();
+        return true;
+    }
+
+    public record Entry<T>(String key, List<T> values, Set<String> tags) {
+    }
+
+    private record HotKey<T>(Supplier<List<T>> loader, Function<List<T>, Collection<String>> extraTags,
+                             long lastRead) {
+    }
+
+    private void removeKeys(String... keys) {
+        for (String key : keys) {
+            inFlight.remove(key);
+            cache.asMap().computeIfPresent(key, (k, previous) -> {
+                untrack(k);
+                return null;
+            });
+        }
+    }
+
+    // Readers must not reload and cache the old state between our write and its commit.
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void track(String key, Set<String> tags) {
+        tagsByKey.put(key, tags);
+        for (String tag : tags) {
+            keysByTag.compute(tag, (t, keys) -> {
+                Set<String> tagged = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                tagged.add(key);
+                return tagged;
+            });
+        }
+    }
+
+    private void untrack(String key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            keysByTag.computeIfPresent(tag, (t, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
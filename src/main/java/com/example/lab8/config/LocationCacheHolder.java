@@ -1,16 +1,75 @@
 package com.example.lab8.config;
 
 import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
-public class LocationCacheHolder {
+@Component
+public class LocationCacheHolder extends EntityCacheHolder<Location> {
 
-    private static final Map<String, List<Location>> INSTANCE = new HashMap<>();
+    public LocationCacheHolder(@Value("${cache.location.maximum-weight:10000}") long maximumWeight,
+                               @Value("${cache.location.expire-after-write:10m}") Duration expireAfterWrite) {
+        super("location", maximumWeight, expireAfterWrite);
+    }
+
+    public static String locationTag(Long id) {
+        return "location:" + id;
+    }
+
+    public static String dateTag(LocalDate date) {
+        return "date:" + date;
+    }
+
+    // Entries holding locations decoded from the yearly sunrise/sunset series of that year.
+    public static String seriesYearTag(int year) {
+        return "series:" + year;
+    }
+
+    public void invalidateLocations(Collection<Long> ids) {
+        invalidateTags(ids.stream().map(LocationCacheHolder::locationTag).toList());
+    }
+
+    public void invalidateDates(Collection<LocalDate> dates) {
+        invalidateTags(dates.stream().map(LocationCacheHolder::dateTag).toList());
+    }
+
+    // Loaded sunrise/sunset rows stay on the heap together with their location, so they count too.
+    @Override
+    protected int weigh(List<Location> locations) {
+        int weight = 0;
+        for (Location location : locations) {
+            weight++;
+            if (isLoaded(location)) {
+                weight += location.getSunriseSunsets().size();
+            }
+        }
+        return Math.max(1, weight);
+    }
+
+    @Override
+    protected Set<String> dependencies(List<Location> locations) {
+        Set<String> tags = new HashSet<>();
+        for (Location location : locations) {
+            tags.add(locationTag(location.getId()));
+            if (isLoaded(location)) {
+                for (SunriseSunset sunriseSunset : location.getSunriseSunsets()) {
+                    tags.add(dateTag(sunriseSunset.getDate()));
+                }
+            }
+        }
+        return tags;
+    }
 
-    public static Map<String, List<Location>> getInstance() {
-        return INSTANCE;
+    private static boolean isLoaded(Location location) {
+        return location.getSunriseSunsets() != null && Hibernate.isInitialized(location.getSunriseSunsets());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.example.lab8.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "aspect-logging")
+public class LoggingAspectProperties {
+
+    // Fraction of calls whose entry and exit are logged; errors are always logged.
+    private double defaultSampleRate = 1.0;
+
+    // Per-method overrides keyed by "ClassName.method", e.g. LocationController.getAll.
+    private Map<String, Double> sampleRates = new HashMap<>();
+
+    // Collections larger than this are rendered as a size summary only.
+    private int maxCollectionItems = 10;
+
+    // Longest rendered value, in characters.
+    private int maxLength = 500;
+
+    public boolean sample(String method) {
+        double rate = sampleRates.getOrDefault(method, defaultSampleRate);
+        if (rate >= 1.0) {
+            return true;
+        }
+        return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
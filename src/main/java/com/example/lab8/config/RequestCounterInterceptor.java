@@ -0,0 +1,15 @@
+package com.example.lab8.config;
+
+import com.example.lab8.service.RequestCounter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class RequestCounterInterceptor implements HandlerInterceptor {
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        RequestCounter.recordStatus(response.getStatus());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.lab8.config;
+
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.service.SunriseSunsetCompaction;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Small idempotent schema fixes that ddl-auto=update cannot express. Runs once Hibernate has
+// updated the schema (hence the explicit dependency on the EntityManagerFactory, which runs
+// ddl-auto); a failing step is logged and skipped so the application still starts.
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrations {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SunriseSunsetCompaction compaction;
+
+    public SchemaMigrations(JdbcTemplate jdbcTemplate, SunriseSunsetCompaction compaction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compaction = compaction;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        // Rows inserted while ids were identity-generated must not collide with the sequences.
+        alignSequence("location_seq", "location");
+        alignSequence("sunrise_sunset_seq", "sunrise_sunset");
+        migrateSunriseSunsetDate();
+        // Duplicates left from before the natural key would make the unique index fail; once the
+        // index exists there can be none, so the scan for them is skipped.
+        if (!indexExists(SunriseSunset.NATURAL_KEY)) {
+            compactSunriseSunsets();
+        }
+        run("unique index sunrise_sunset(date, latitude, longitude)", "CREATE UNIQUE INDEX IF NOT EXISTS "
+                + SunriseSunset.NATURAL_KEY + " ON sunrise_sunset (date, latitude, longitude)");
+        run("drop index idx_sunrise_sunset_date_lat_lon", "DROP INDEX IF EXISTS idx_sunrise_sunset_date_lat_lon");
+        run("index location_sunrise_sunset(sunrise_sunset_id)", "CREATE INDEX IF NOT EXISTS "
+                + "idx_location_sunrise_sunset_ss ON location_sunrise_sunset (sunrise_sunset_id, location_id)");
+        run("index location_sunrise_sunset(location_id)", "CREATE INDEX IF NOT EXISTS "
+                + "idx_location_sunrise_sunset_location ON location_sunrise_sunset (location_id, sunrise_sunset_id)");
+    }
+
+    // The column used to be free-form text; values that are not ISO dates become NULL.
+    private void migrateSunriseSunsetDate() {
+        try {
+            String type = jdbcTemplate.queryForObject("SELECT data_type FROM information_schema.columns "
+                    + "WHERE table_schema = current_schema() AND table_name = 'sunrise_sunset' "
+                    + "AND column_name = 'date'", String.class);
+            if (type == null || type.equalsIgnoreCase("date")) {
+                return;
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not inspect sunrise_sunset.date: {}", e.getMessage());
+            return;
+        }
+        run("sunrise_sunset.date to DATE", "ALTER TABLE sunrise_sunset ALTER COLUMN date TYPE DATE USING "
+                + "CASE WHEN date ~ '^\\d{4}-\\d{2}-\\d{2}$' THEN date::date END");
+    }
+
+    // Where the catalog cannot be read the index is taken as missing, which only costs a compaction.
+    private boolean indexExists(String name) {
+        try {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_indexes "
+                    + "WHERE schemaname = current_schema() AND indexname = ?", Long.class, name);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            logger.warn("Could not look up index {}: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    private void compactSunriseSunsets() {
+        try {
+            compaction.compact();
+        } catch (DataAccessException e) {
+            logger.warn("Schema migration step 'compact sunrise_sunset' skipped: {}", e.getMessage());
+        }
+    }
+
+    private void alignSequence(String sequence, String table) {
+        run("align " + sequence, "SELECT setval('" + sequence + "', GREATEST("
+                + "(SELECT COALESCE(MAX(id), 0) FROM " + table + "), (SELECT last_value FROM " + sequence + "), 1))");
+    }
+
+    private void run(String step, String sql) {
+        try {
+            jdbcTemplate.execute(sql);
+            logger.info("Schema migration step '{}' applied", step);
+        } catch (DataAccessException e) {
+            logger.warn("Schema migration step '{}' skipped: {}", step, e.getMessage());
+        }
+    }
+}
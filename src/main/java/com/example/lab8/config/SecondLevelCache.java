@@ -0,0 +1,58 @@
+package com.example.lab8.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Access to Hibernate's second-level cache for code outside the persistence layer.
+@Component
+public class SecondLevelCache {
+
+    private final SessionFactory sessionFactory;
+    private final CacheManager cacheManager;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory, CacheManager hibernateCacheManager) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cacheManager = hibernateCacheManager;
+    }
+
+    // For writes that bypass Hibernate (plain JDBC), which it cannot track on its own.
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", statistics.getSecondLevelCacheHitCount());
+        result.put("misses", statistics.getSecondLevelCacheMissCount());
+        result.put("puts", statistics.getSecondLevelCachePutCount());
+        result.put("queryHits", statistics.getQueryCacheHitCount());
+        result.put("queryMisses", statistics.getQueryCacheMissCount());
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String name : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("hits", region.getHitCount());
+                values.put("misses", region.getMissCount());
+                values.put("puts", region.getPutCount());
+                // Hibernate cannot count JCache entries, so the size comes from Caffeine itself.
+                javax.cache.Cache<Object, Object> cache = cacheManager.getCache(name);
+                if (cache != null) {
+                    values.put("size", cache.unwrap(Cache.class).estimatedSize());
+                }
+                regions.put(name, values);
+            }
+        }
+        result.put("regions", regions);
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lab8.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "hibernate-cache")
+public class SecondLevelCacheProperties {
+
+    public static final String LOCATION = "location";
+    public static final String SUNRISE_SUNSET = "sunrise-sunset";
+    public static final String LOCATION_SUNRISE_SUNSETS = "location-sunrise-sunsets";
+    public static final String LOCATION_QUERIES = "location-queries";
+    public static final String DEFAULT_QUERIES = "default-query-results-region";
+
+    // Bounds of every Hibernate region, keyed by region name; entries may be overridden per key.
+    private Map<String, Region> regions = defaults();
+
+    @Getter
+    @Setter
+    public static class Region {
+
+        private long maximumSize = 10_000;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        public Region() {
+        }
+
+        Region(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    private static Map<String, Region> defaults() {
+        Map<String, Region> regions = new LinkedHashMap<>();
+        regions.put(LOCATION, new Region(10_000));
+        regions.put(SUNRISE_SUNSET, new Region(50_000));
+        regions.put(LOCATION_SUNRISE_SUNSETS, new Region(10_000));
+        regions.put(LOCATION_QUERIES, new Region(1_000));
+        regions.put(DEFAULT_QUERIES, new Region(1_000));
+        return regions;
+    }
+}
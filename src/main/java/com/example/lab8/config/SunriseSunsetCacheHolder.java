@@ -1,16 +1,36 @@
 package com.example.lab8.config;
 
 import com.example.lab8.model.SunriseSunset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
-public class SunriseSunsetCacheHolder {
+@Component
+public class SunriseSunsetCacheHolder extends EntityCacheHolder<SunriseSunset> {
 
-    private static final Map<String, List<SunriseSunset>> INSTANCE = new HashMap<>();
+    public SunriseSunsetCacheHolder(@Value("${cache.sunrise-sunset.maximum-weight:50000}") long maximumWeight,
+                                    @Value("${cache.sunrise-sunset.expire-after-write:10m}") Duration expireAfterWrite) {
+        super("sunriseSunset", maximumWeight, expireAfterWrite);
+    }
+
+    public static String sunriseSunsetTag(Long id) {
+        return "sunriseSunset:" + id;
+    }
+
+    public void invalidateSunriseSunset(Long id) {
+        invalidateTags(List.of(sunriseSunsetTag(id)));
+    }
 
-    public static Map<String, List<SunriseSunset>> getInstance() {
-        return INSTANCE;
+    @Override
+    protected Set<String> dependencies(List<SunriseSunset> sunriseSunsets) {
+        Set<String> tags = new HashSet<>();
+        for (SunriseSunset sunriseSunset : sunriseSunsets) {
+            tags.add(sunriseSunsetTag(sunriseSunset.getId()));
+        }
+        return tags;
     }
-}
\ No newline at end of file
+}
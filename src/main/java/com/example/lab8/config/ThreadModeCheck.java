@@ -0,0 +1,35 @@
+package com.example.lab8.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Spring Boot only honours spring.threads.virtual.enabled on Java 21+ and ignores it elsewhere,
+// so a VIRTUAL_THREADS=true deployment on an older JVM would quietly keep the platform pools.
+@Component
+public class ThreadModeCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadModeCheck.class);
+
+    private static final int VIRTUAL_THREADS_FEATURE = 21;
+
+    private final boolean virtualThreads;
+
+    public ThreadModeCheck(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    public void check() {
+        int feature = Runtime.version().feature();
+        if (virtualThreads && feature < VIRTUAL_THREADS_FEATURE) {
+            logger.warn("spring.threads.virtual.enabled=true has no effect on Java {}; requests, async work "
+                    + "and scheduled jobs run on platform threads (server.tomcat.threads.max applies). "
+                    + "Virtual threads need Java {}+", feature, VIRTUAL_THREADS_FEATURE);
+        } else {
+            logger.info("Serving requests on {} threads", virtualThreads ? "virtual" : "platform");
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.example.lab8.controller;
 
+import com.example.lab8.dto.BulkUpsertResult;
+import com.example.lab8.dto.KeysetPage;
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.dto.NearbyLocation;
 import com.example.lab8.model.Location;
+import com.example.lab8.service.ExportService;
 import com.example.lab8.service.LocationService;
+import com.example.lab8.service.ResourceVersions;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,28 +32,84 @@ public class LocationController {
 
     private static final Logger logger = LoggerFactory.getLogger(LocationController.class);
     private final LocationService locationService;
+    private final ExportService exportService;
+    private final ResourceVersions versions;
 
+    // The tag is read before the data, so a concurrent write can only make it older than the body.
     @GetMapping
-    public ResponseEntity<List<Location>> getAll() {
-        logger.info("Getting all locations");
-        return ResponseEntity.ok(locationService.getAll());
+    public ResponseEntity<List<Object>> getAll(
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) List<String> fields,
+            WebRequest request) {
+        LocationView locationView = LocationView.of(view, fields);
+        String etag = versions.locations(locationView);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        logger.info("Getting all locations with fields: {}", locationView.fields());
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .body(locationService.getAll(locationView));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<Location>> getPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        logger.info("Getting location page after cursor: {}", cursor);
+        return ResponseEntity.ok(locationService.getPage(cursor, size));
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(locationService.getCacheStatistics());
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyLocation>> getNearby(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) Integer k,
+            @RequestParam(required = false) Double radiusKm) {
+        logger.info("Getting {} locations nearest to {}, {} within {} km", k, lat, lon, radiusKm);
+        return ResponseEntity.ok(locationService.findNearby(lat, lon, k, radiusKm));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Location> getById(@PathVariable Long id) {
+    public ResponseEntity<Object> getById(
+            @PathVariable Long id,
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) List<String> fields,
+            WebRequest request) {
+        LocationView locationView = LocationView.of(view, fields);
+        String etag = versions.location(id, locationView);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         logger.info("Getting location by ID: {}", id);
-        return locationService.getById(id)
-                .map(ResponseEntity::ok)
+        return locationService.getById(id, locationView)
+                .map(location -> ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(location))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/by-date")
-    public ResponseEntity<List<Location>> getLocationsByDate(@RequestParam String date) {
+    public ResponseEntity<List<Location>> getLocationsByDate(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
         logger.info("Getting locations by sunrise/sunset date: {}", date);
         List<Location> locations = locationService.getLocationsByDate(date);
         return ResponseEntity.ok(locations);
     }
 
+    @GetMapping(value = "/by-date-range", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getLocationsByDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        logger.info("Streaming locations with sunrise/sunset records from {} to {}", from, to);
+        ExportService.checkRange(from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> exportService.exportLocationsByDateRange(from, to, out));
+    }
+
     @PostMapping
     public ResponseEntity<Location> create(
             @Valid @RequestBody Location location,
@@ -50,11 +120,11 @@ public class LocationController {
     }
 
     @PostMapping("/bulk")
-    public ResponseEntity<List<Location>> bulkCreateOrUpdate(
+    public ResponseEntity<BulkUpsertResult> bulkCreateOrUpdate(
             @Valid @RequestBody List<Location> locations,
             @RequestParam(required = false) List<Long> sunriseSunsetIds) {
         logger.info("Bulk creating/updating locations: {}", locations.size());
-        List<Location> result = locationService.bulkCreateOrUpdate(locations, sunriseSunsetIds);
+        BulkUpsertResult result = locationService.bulkCreateOrUpdate(locations, sunriseSunsetIds);
         return ResponseEntity.ok(result);
     }
 
@@ -0,0 +1,40 @@
+package com.example.lab8.controller;
+
+import com.example.lab8.dto.PrecomputeStatus;
+import com.example.lab8.service.SunriseSunsetPrecomputeService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/precompute")
+@RequiredArgsConstructor
+public class PrecomputeController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrecomputeController.class);
+
+    private final SunriseSunsetPrecomputeService precomputeService;
+
+    @PostMapping
+    public ResponseEntity<PrecomputeStatus> start(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        logger.info("Starting sunrise/sunset precomputation from {} to {}", from, to);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(precomputeService.start(from, to));
+    }
+
+    @GetMapping
+    public ResponseEntity<PrecomputeStatus> getStatus() {
+        return ResponseEntity.ok(precomputeService.getStatus());
+    }
+}
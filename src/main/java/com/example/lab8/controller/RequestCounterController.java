@@ -6,12 +6,19 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/counter")
 public class RequestCounterController {
 
     @GetMapping
+    public ResponseEntity<Map<String, Object>> getRequestCounts() {
+        return ResponseEntity.ok(RequestCounter.getBreakdown());
+    }
+
+    @GetMapping("/total")
     public ResponseEntity<Long> getRequestCount() {
         return ResponseEntity.ok(RequestCounter.getRequestCount());
     }
-}
\ No newline at end of file
+}
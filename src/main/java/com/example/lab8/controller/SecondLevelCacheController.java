@@ -0,0 +1,23 @@
+package com.example.lab8.controller;
+
+import com.example.lab8.config.SecondLevelCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache/second-level")
+@RequiredArgsConstructor
+public class SecondLevelCacheController {
+
+    private final SecondLevelCache secondLevelCache;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(secondLevelCache.getStatistics());
+    }
+}
@@ -1,15 +1,34 @@
 package com.example.lab8.controller;
 
+import com.example.lab8.dto.DaylightReport;
+import com.example.lab8.dto.KeysetPage;
+import com.example.lab8.dto.SolarTimes;
+import com.example.lab8.exception.BadRequestException;
 import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.model.SunriseSunsetSeries;
+import com.example.lab8.service.ExportService;
+import com.example.lab8.service.ResourceVersions;
+import com.example.lab8.service.SunriseSunsetSeriesService;
 import com.example.lab8.service.SunriseSunsetService;
+import com.example.lab8.service.SunriseSunsetWriteBehind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/sunrise-sunset")
@@ -20,19 +39,110 @@ public class SunriseSunsetController {
     @Autowired
     private SunriseSunsetService sunriseSunsetService;
 
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ResourceVersions versions;
+
+    @Autowired
+    private SunriseSunsetWriteBehind writeBehind;
+
+    @Autowired
+    private SunriseSunsetSeriesService seriesService;
+
     @GetMapping
-    public ResponseEntity<List<SunriseSunset>> getAll() {
+    public ResponseEntity<List<SunriseSunset>> getAll(WebRequest request) {
+        String etag = versions.sunriseSunsets();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         logger.info("Getting all sunrise/sunset records");
-        return ResponseEntity.ok(sunriseSunsetService.getAll());
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .body(sunriseSunsetService.getAll());
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<SunriseSunset>> getPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        logger.info("Getting sunrise/sunset page after cursor: {}", cursor);
+        return ResponseEntity.ok(sunriseSunsetService.getPage(cursor, size));
+    }
+
+    @GetMapping("/calculate")
+    public ResponseEntity<SolarTimes> calculate(
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        logger.info("Calculating sunrise/sunset for {}, {} on {}", latitude, longitude, date);
+        return ResponseEntity.ok(sunriseSunsetService.calculate(latitude, longitude, date));
     }
 
+    @GetMapping(value = "/by-date-range", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getByDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        logger.info("Streaming sunrise/sunset records from {} to {}", from, to);
+        ExportService.checkRange(from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> exportService.exportSunriseSunsetsByDateRange(from, to, out));
+    }
+
+    // The year (UTC by default) at a location's coordinates, encoded as in SunriseSunsetSeriesCodec.
+    // Stored and on-the-fly series of a coordinate and year are identical, hence the content ETag.
+    @GetMapping(value = "/series", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getSeries(@RequestParam Long locationId,
+                                            @RequestParam(required = false) Integer year,
+                                            WebRequest request) {
+        int resolvedYear = year != null ? year : LocalDate.now(ZoneOffset.UTC).getYear();
+        logger.info("Getting the {} sunrise/sunset series for location {}", resolvedYear, locationId);
+        SunriseSunsetSeries series = seriesService.getSeries(locationId, resolvedYear);
+        String etag = DigestUtils.md5DigestAsHex(series.getData());
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM).body(series.getData());
+    }
+
+    @GetMapping("/analytics/daylight")
+    public ResponseEntity<DaylightReport> getDaylightStatistics(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        logger.info("Getting day length statistics from {} to {}", from, to);
+        return ResponseEntity.ok(sunriseSunsetService.getDaylightStatistics(from, to));
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(sunriseSunsetService.getCacheStatistics());
+    }
+
+    // With write-behind enabled, ack=queued answers 202 as soon as the record is queued; the
+    // default ack=durable answers once it is committed.
     @PostMapping
-    public ResponseEntity<SunriseSunset> create(@Valid @RequestBody SunriseSunset sunriseSunset) {
+    public ResponseEntity<SunriseSunset> create(@Valid @RequestBody SunriseSunset sunriseSunset,
+                                                @RequestParam(defaultValue = "durable") String ack) {
         logger.info("Creating sunrise/sunset record: {}", sunriseSunset);
+        if (!"durable".equals(ack) && !"queued".equals(ack)) {
+            throw new BadRequestException("ack must be durable or queued");
+        }
+        if (writeBehind.isEnabled()) {
+            boolean durable = "durable".equals(ack);
+            SunriseSunset accepted = writeBehind.create(sunriseSunset, durable);
+            return durable ? ResponseEntity.ok(accepted) : ResponseEntity.accepted().body(accepted);
+        }
         SunriseSunset created = sunriseSunsetService.create(sunriseSunset);
         return ResponseEntity.ok(created);
     }
 
+    @GetMapping("/write-behind")
+    public ResponseEntity<Map<String, Object>> getWriteBehindStatistics() {
+        return ResponseEntity.ok(writeBehind.getStatistics());
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<SunriseSunset> update(@PathVariable Long id, @Valid @RequestBody SunriseSunset sunriseSunset) {
         logger.info("Updating sunrise/sunset record with id {}: {}", id, sunriseSunset);
@@ -48,8 +158,9 @@ public class SunriseSunsetController {
     }
 
     @GetMapping("/by-date")
-    public ResponseEntity<?> getByDate(@RequestParam(required = false) String date) {
-        if (date == null || date.trim().isEmpty()) {
+    public ResponseEntity<?> getByDate(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        if (date == null) {
             logger.warn("Date parameter is missing or empty");
             return ResponseEntity.badRequest().body("Date parameter is required");
         }
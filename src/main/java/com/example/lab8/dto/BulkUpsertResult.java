@@ -0,0 +1,11 @@
+package com.example.lab8.dto;
+
+import com.example.lab8.model.Location;
+
+import java.util.List;
+
+public record BulkUpsertResult(List<Location> locations, List<Chunk> chunks, long totalMillis) {
+
+    public record Chunk(int index, int size, int inserted, int updated, long millis) {
+    }
+}
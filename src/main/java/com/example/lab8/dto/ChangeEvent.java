@@ -0,0 +1,38 @@
+package com.example.lab8.dto;
+
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+
+// Published by the services for every committed mutation. data is the new state for UPSERT and
+// null for DELETE; RESYNC tells clients to refetch because individual changes were not tracked.
+public record ChangeEvent(String entity, String type, Long id, Object data) {
+
+    public static final String LOCATION = "location";
+    public static final String SUNRISE_SUNSET = "sunriseSunset";
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+    public static final String RESYNC = "RESYNC";
+    public static final String ALL = "all";
+
+    public static ChangeEvent upsert(Location location) {
+        return new ChangeEvent(LOCATION, UPSERT, location.getId(), new LocationExportRow(location.getId(),
+                location.getName(), location.getCountry(), location.getLatitude(), location.getLongitude(),
+                location.getSunriseSunsets().stream().map(SunriseSunset::getId).toList()));
+    }
+
+    public static ChangeEvent upsert(SunriseSunset sunriseSunset) {
+        return new ChangeEvent(SUNRISE_SUNSET, UPSERT, sunriseSunset.getId(), sunriseSunset);
+    }
+
+    public static ChangeEvent deleted(String entity, Long id) {
+        return new ChangeEvent(entity, DELETE, id, null);
+    }
+
+    public static ChangeEvent resync() {
+        return new ChangeEvent(ALL, RESYNC, null, null);
+    }
+
+    public String key() {
+        return entity + ":" + id;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.lab8.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record DaylightReport(LocalDate from, LocalDate to, int rows, List<DaylightStats> locations) {
+}
@@ -0,0 +1,7 @@
+package com.example.lab8.dto;
+
+import java.util.List;
+
+public record DaylightStats(double latitude, double longitude, List<Long> locationIds, int days,
+                            int minMinutes, int maxMinutes, double meanMinutes, long totalMinutes) {
+}
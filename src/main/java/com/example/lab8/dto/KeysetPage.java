@@ -0,0 +1,50 @@
+package com.example.lab8.dto;
+
+import com.example.lab8.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// One page of a keyset (seek) pagination over ascending ids. The cursor is an opaque token
+// carrying the last id of the previous page; it is null when no further rows can exist.
+public record KeysetPage<T>(List<T> items, int size, String nextCursor) {
+
+    private static final String CURSOR_PREFIX = "id:";
+
+    public static <T> KeysetPage<T> of(List<T> items, int size, ToLongFunction<T> id) {
+        String next = items.size() < size ? null : encodeCursor(id.applyAsLong(items.get(items.size() - 1)));
+        return new KeysetPage<>(items, size, next);
+    }
+
+    public static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the error below
+        }
+        throw new BadRequestException("Invalid page cursor: " + cursor);
+    }
+
+    public static int resolveSize(Integer requested, int defaultSize, int maxSize) {
+        if (requested == null) {
+            return defaultSize;
+        }
+        if (requested < 1) {
+            throw new BadRequestException("Page size must be positive");
+        }
+        return Math.min(requested, maxSize);
+    }
+}
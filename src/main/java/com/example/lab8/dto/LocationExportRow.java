@@ -0,0 +1,7 @@
+package com.example.lab8.dto;
+
+import java.util.List;
+
+public record LocationExportRow(Long id, String name, String country, Double latitude, Double longitude,
+                                List<Long> sunriseSunsetIds) {
+}
@@ -0,0 +1,5 @@
+package com.example.lab8.dto;
+
+// Scalar columns of a location, built by a constructor expression so no entity is managed.
+public record LocationSummary(Long id, String name, String country, Double latitude, Double longitude) {
+}
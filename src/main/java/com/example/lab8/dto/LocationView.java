@@ -0,0 +1,90 @@
+package com.example.lab8.dto;
+
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.model.Location;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// The shape a location read is rendered in, resolved from the view= and fields= parameters.
+// Only shapes that include sunriseSunsets need the entity graph; all others are served from
+// LocationSummary rows. Fields are always rendered in declaration order.
+public record LocationView(List<String> fields) {
+
+    public static final String SUNRISE_SUNSETS = "sunriseSunsets";
+
+    private static final Map<String, Function<LocationSummary, Object>> SUMMARY_FIELDS = summaryFields();
+    private static final List<String> ALL_FIELDS = List.of("id", "name", "country", "latitude", "longitude",
+            SUNRISE_SUNSETS);
+
+    public static final LocationView FULL = new LocationView(ALL_FIELDS);
+    public static final LocationView SUMMARY = new LocationView(List.copyOf(SUMMARY_FIELDS.keySet()));
+
+    public static LocationView of(String view, Collection<String> fields) {
+        if (view != null && !view.equals("full") && !view.equals("summary")) {
+            throw new BadRequestException("view must be summary or full");
+        }
+        if (fields == null || fields.isEmpty()) {
+            return "summary".equals(view) ? SUMMARY : FULL;
+        }
+        Set<String> requested = Set.copyOf(fields);
+        for (String field : requested) {
+            if (!ALL_FIELDS.contains(field)) {
+                throw new BadRequestException("Unknown location field: " + field);
+            }
+        }
+        if ("summary".equals(view) && requested.contains(SUNRISE_SUNSETS)) {
+            throw new BadRequestException("sunriseSunsets is not part of the summary view");
+        }
+        LocationView resolved = new LocationView(ALL_FIELDS.stream().filter(requested::contains).toList());
+        return resolved.equals(FULL) ? FULL : resolved.equals(SUMMARY) ? SUMMARY : resolved;
+    }
+
+    public boolean needsSunriseSunsets() {
+        return fields.contains(SUNRISE_SUNSETS);
+    }
+
+    // Distinguishes the representations of one resource in its ETag; empty for the full entity.
+    public String variant() {
+        if (equals(FULL)) {
+            return "";
+        }
+        return equals(SUMMARY) ? "summary" : String.join(".", fields);
+    }
+
+    public Object render(Location location) {
+        return equals(FULL) ? location : project(summaryOf(location), location);
+    }
+
+    public Object render(LocationSummary summary) {
+        return equals(SUMMARY) ? summary : project(summary, null);
+    }
+
+    private Map<String, Object> project(LocationSummary summary, Location location) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            values.put(field, field.equals(SUNRISE_SUNSETS) ? location.getSunriseSunsets()
+                    : SUMMARY_FIELDS.get(field).apply(summary));
+        }
+        return values;
+    }
+
+    private static LocationSummary summaryOf(Location location) {
+        return new LocationSummary(location.getId(), location.getName(), location.getCountry(),
+                location.getLatitude(), location.getLongitude());
+    }
+
+    private static Map<String, Function<LocationSummary, Object>> summaryFields() {
+        Map<String, Function<LocationSummary, Object>> fields = new LinkedHashMap<>();
+        fields.put("id", LocationSummary::id);
+        fields.put("name", LocationSummary::name);
+        fields.put("country", LocationSummary::country);
+        fields.put("latitude", LocationSummary::latitude);
+        fields.put("longitude", LocationSummary::longitude);
+        return fields;
+    }
+}
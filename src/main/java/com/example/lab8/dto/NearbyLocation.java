@@ -0,0 +1,12 @@
+package com.example.lab8.dto;
+
+import com.example.lab8.model.Location;
+
+public record NearbyLocation(Long id, String name, String country, Double latitude, Double longitude,
+                             double distanceKm) {
+
+    public static NearbyLocation of(Location location, double distanceKm) {
+        return new NearbyLocation(location.getId(), location.getName(), location.getCountry(),
+                location.getLatitude(), location.getLongitude(), distanceKm);
+    }
+}
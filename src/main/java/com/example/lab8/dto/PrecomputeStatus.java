@@ -0,0 +1,13 @@
+package com.example.lab8.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public record PrecomputeStatus(String state, LocalDate from, LocalDate to, int totalLocations,
+                               int processedLocations, long insertedRows, long storedSeries,
+                               Instant startedAt, Instant finishedAt, String error) {
+
+    public static PrecomputeStatus idle() {
+        return new PrecomputeStatus("IDLE", null, null, 0, 0, 0, 0, null, null, null);
+    }
+}
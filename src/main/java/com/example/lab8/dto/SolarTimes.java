@@ -0,0 +1,7 @@
+package com.example.lab8.dto;
+
+import java.time.LocalDate;
+
+public record SolarTimes(LocalDate date, double latitude, double longitude, String sunrise, String sunset,
+                         Double dayLengthMinutes) {
+}
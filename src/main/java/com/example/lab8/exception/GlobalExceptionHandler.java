@@ -1,7 +1,10 @@
 package com.example.lab8.exception;
 
+import com.example.lab8.model.SunriseSunset;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -9,8 +12,10 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 @ControllerAdvice
@@ -42,4 +47,50 @@ public class GlobalExceptionHandler {
         logger.warn("Resource not found: {}", ex.getMessage());
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<String> handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        logger.warn("Invalid value for parameter {}: {}", ex.getName(), ex.getValue());
+        return new ResponseEntity<>("Invalid value for parameter " + ex.getName() + ": " + ex.getValue(),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<String> handleServiceUnavailable(ServiceUnavailableException ex) {
+        logger.warn("Service unavailable: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<String> handleBadRequest(BadRequestException ex) {
+        logger.warn("Bad request: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Only a clash on the sunrise/sunset natural key is the client's conflict (e.g. an update moving
+    // a record onto the date and coordinates of another one); any other violation is a server error.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleConflict(DataIntegrityViolationException ex) {
+        if (!violates(ex, SunriseSunset.NATURAL_KEY)) {
+            return handleAllExceptions(ex);
+        }
+        logger.warn("Conflicting write: {}", ex.getMostSpecificCause().getMessage());
+        return new ResponseEntity<>("The record conflicts with an existing one", HttpStatus.CONFLICT);
+    }
+
+    // Hibernate names the constraint; a plain JDBC failure only mentions it in the driver's message.
+    // Either may qualify or upper-case the name depending on the database.
+    private static boolean violates(DataIntegrityViolationException ex, String constraint) {
+        String name = ex.getMostSpecificCause().getMessage();
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                name = violation.getConstraintName();
+                break;
+            }
+        }
+        return name != null && name.toLowerCase(Locale.ROOT).contains(constraint);
+    }
+}
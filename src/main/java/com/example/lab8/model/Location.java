@@ -1,16 +1,26 @@
 package com.example.lab8.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "location")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "location")
+@Table(name = "location", indexes = {
+        @Index(name = "idx_location_updated_at", columnList = "updated_at")
+})
 public class Location implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "location_seq")
+    @SequenceGenerator(name = "location_seq", sequenceName = "location_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false)
@@ -26,6 +36,7 @@ public class Location implements Serializable {
     private Double longitude;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "location-sunrise-sunsets")
     @JoinTable(
             name = "location_sunrise_sunset",
             joinColumns = @JoinColumn(name = "location_id"),
@@ -33,6 +44,11 @@ public class Location implements Serializable {
     )
     private List<SunriseSunset> sunriseSunsets = new ArrayList<>();
 
+    // Time of the last write; a persisted cache snapshot uses it to find rows changed since.
+    @JsonIgnore
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public Location() {
     }
 
@@ -91,6 +107,17 @@ public class Location implements Serializable {
         this.sunriseSunsets = sunriseSunsets;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    // Also called explicitly when only the links changed, which would not dirty the row itself.
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = Instant.now();
+    }
+
     @Override
     public String toString() {
         return "Location{" +
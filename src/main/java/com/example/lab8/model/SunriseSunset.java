@@ -1,18 +1,34 @@
 package com.example.lab8.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
 
 @Entity
-@Table(name = "sunrise_sunset")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sunrise-sunset")
+// The natural-key unique index is created by SchemaMigrations once duplicates have been
+// compacted; declaring it here would let ddl-auto try to create it first and fail.
+@Table(name = "sunrise_sunset", indexes = {
+        @Index(name = "idx_sunrise_sunset_updated_at", columnList = "updated_at")
+})
 public class SunriseSunset implements Serializable {
 
+    // Natural key: one row per date and coordinates, shared by every location there.
+    public static final String NATURAL_KEY = "uk_sunrise_sunset_date_lat_lon";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sunrise_sunset_seq")
+    @SequenceGenerator(name = "sunrise_sunset_seq", sequenceName = "sunrise_sunset_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "date")
-    private String date;
+    private LocalDate date;
 
     @Column(name = "latitude")
     private Double latitude;
@@ -26,10 +42,15 @@ public class SunriseSunset implements Serializable {
     @Column(name = "sunset")
     private String sunset;
 
+    // Time of the last write; a persisted cache snapshot uses it to find rows changed since.
+    @JsonIgnore
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public SunriseSunset() {
     }
 
-    public SunriseSunset(String date, Double latitude, Double longitude, String sunrise, String sunset) {
+    public SunriseSunset(LocalDate date, Double latitude, Double longitude, String sunrise, String sunset) {
         this.date = date;
         this.latitude = latitude;
         this.longitude = longitude;
@@ -45,11 +66,11 @@ public class SunriseSunset implements Serializable {
         this.id = id;
     }
 
-    public String getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
-    public void setDate(String date) {
+    public void setDate(LocalDate date) {
         this.date = date;
     }
 
@@ -85,6 +106,16 @@ public class SunriseSunset implements Serializable {
         this.sunset = sunset;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = Instant.now();
+    }
+
     @Override
     public String toString() {
         return "SunriseSunset{" +
@@ -0,0 +1,92 @@
+package com.example.lab8.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// A whole calendar year of sunrise and sunset times for one coordinate, in the compact binary
+// form of SunriseSunsetSeriesCodec: about 750 bytes instead of one sunrise_sunset row per day.
+@Entity
+@Table(name = "sunrise_sunset_series", indexes = {
+        @Index(name = "uk_sunrise_sunset_series_lat_lon_year", columnList = "latitude, longitude, series_year",
+                unique = true)
+})
+public class SunriseSunsetSeries {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sunrise_sunset_series_seq")
+    @SequenceGenerator(name = "sunrise_sunset_series_seq", sequenceName = "sunrise_sunset_series_seq",
+            allocationSize = 50)
+    private Long id;
+
+    @Column(name = "latitude", nullable = false)
+    private Double latitude;
+
+    @Column(name = "longitude", nullable = false)
+    private Double longitude;
+
+    @Column(name = "series_year", nullable = false)
+    private Integer year;
+
+    // At most 366 days of two varints of up to three bytes each, plus the header.
+    @Column(name = "data", nullable = false, length = 4096)
+    private byte[] data;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    public SunriseSunsetSeries() {
+    }
+
+    public SunriseSunsetSeries(Double latitude, Double longitude, Integer year, byte[] data) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.year = year;
+        this.data = data;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = Instant.now();
+    }
+
+    @Override
+    public String toString() {
+        return "SunriseSunsetSeries{" +
+                "id=" + id +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", year=" + year +
+                ", bytes=" + (data != null ? data.length : 0) +
+                '}';
+    }
+}
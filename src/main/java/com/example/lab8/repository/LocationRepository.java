@@ -1,13 +1,21 @@
 package com.example.lab8.repository;
 
+import com.example.lab8.dto.LocationSummary;
 import com.example.lab8.model.Location;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LocationRepository extends JpaRepository<Location, Long> {
 
@@ -17,8 +25,71 @@ public interface LocationRepository extends JpaRepository<Location, Long> {
     @EntityGraph(attributePaths = {"sunriseSunsets"})
     Optional<Location> findById(Long id);
 
-    @Query("SELECT l FROM Location l JOIN l.sunriseSunsets ss " +
+    @EntityGraph(attributePaths = {"sunriseSunsets"})
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "location-queries")
+    })
+    @Query("SELECT DISTINCT l FROM Location l JOIN l.sunriseSunsets ss " +
             "WHERE ss.date = :date " +
             "ORDER BY l.name")
-    List<Location> findLocationsBySunriseSunsetDate(@Param("date") String date);
+    List<Location> findLocationsBySunriseSunsetDate(@Param("date") LocalDate date);
+
+    @Query("SELECT new com.example.lab8.dto.LocationSummary(l.id, l.name, l.country, l.latitude, l.longitude) " +
+            "FROM Location l ORDER BY l.id")
+    List<LocationSummary> findAllSummaries();
+
+    @Query("SELECT new com.example.lab8.dto.LocationSummary(l.id, l.name, l.country, l.latitude, l.longitude) " +
+            "FROM Location l WHERE l.id = :id")
+    Optional<LocationSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("SELECT new com.example.lab8.dto.LocationSummary(l.id, l.name, l.country, l.latitude, l.longitude) " +
+            "FROM Location l, SunriseSunsetSeries s " +
+            "WHERE s.year = :year AND s.latitude = l.latitude AND s.longitude = l.longitude " +
+            "AND NOT EXISTS (SELECT 1 FROM Location o JOIN o.sunriseSunsets ss WHERE o = l AND ss.date = :date) " +
+            "ORDER BY l.name")
+    List<LocationSummary> findSummariesWithSeriesAndNoRowOn(@Param("year") Integer year,
+                                                            @Param("date") LocalDate date);
+
+    // Ids of getLocationsByDate's merged result, in the order of findLocationsBySunriseSunsetDate.
+    @Query("SELECT l.id FROM Location l " +
+            "WHERE EXISTS (SELECT 1 FROM Location o JOIN o.sunriseSunsets ss WHERE o = l AND ss.date = :date) " +
+            "OR EXISTS (SELECT 1 FROM SunriseSunsetSeries s " +
+            "WHERE s.year = :year AND s.latitude = l.latitude AND s.longitude = l.longitude) " +
+            "ORDER BY l.name")
+    List<Long> findIdsOnDateOrWithSeriesOrderByName(@Param("year") Integer year, @Param("date") LocalDate date);
+
+    @Query("SELECT l.id FROM Location l WHERE l.id > :afterId ORDER BY l.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"sunriseSunsets"})
+    @Query("SELECT l FROM Location l WHERE l.id IN :ids ORDER BY l.id")
+    List<Location> findAllWithSunriseSunsetsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT l.id, l.latitude, l.longitude FROM Location l " +
+            "WHERE l.latitude IS NOT NULL AND l.longitude IS NOT NULL " +
+            "ORDER BY l.id")
+    List<Object[]> findCoordinates();
+
+    // One row per location/sunrise-sunset link (or one row with a null link), ordered by location.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l.id, l.name, l.country, l.latitude, l.longitude, ss.id " +
+            "FROM Location l LEFT JOIN l.sunriseSunsets ss " +
+            "ORDER BY l.id, ss.id")
+    Stream<Object[]> streamAllWithSunriseSunsetIds();
+
+    // Same row shape as streamAllWithSunriseSunsetIds, restricted to links dated within the range.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l.id, l.name, l.country, l.latitude, l.longitude, ss.id " +
+            "FROM Location l JOIN l.sunriseSunsets ss " +
+            "WHERE ss.date BETWEEN :from AND :to " +
+            "ORDER BY l.id, ss.id")
+    Stream<Object[]> streamWithSunriseSunsetIdsByDateBetween(@Param("from") LocalDate from,
+                                                             @Param("to") LocalDate to);
 }
\ No newline at end of file
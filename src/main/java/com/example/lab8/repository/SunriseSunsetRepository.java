@@ -1,12 +1,49 @@
 package com.example.lab8.repository;
 
 import com.example.lab8.model.SunriseSunset;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SunriseSunsetRepository extends JpaRepository<SunriseSunset, Long> {
-    List<SunriseSunset> findByDate(String date);
+    List<SunriseSunset> findByDate(LocalDate date);
+
+    Optional<SunriseSunset> findByDateAndLatitudeAndLongitude(LocalDate date, Double latitude, Double longitude);
+
+    List<SunriseSunset> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM SunriseSunset s ORDER BY s.id")
+    Stream<SunriseSunset> streamAll();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    // In id order, which the snapshot binary searches; any other order costs it a sort after loading.
+    @Query("SELECT s.id, s.date, s.latitude, s.longitude, s.sunrise, s.sunset FROM SunriseSunset s ORDER BY s.id")
+    Stream<Object[]> streamColumns();
+
+    // Ordered like the natural-key index (SunriseSunset.NATURAL_KEY) so the range is read straight off the index.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM SunriseSunset s WHERE s.date BETWEEN :from AND :to " +
+            "ORDER BY s.date, s.latitude, s.longitude")
+    Stream<SunriseSunset> streamByDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
 }
\ No newline at end of file
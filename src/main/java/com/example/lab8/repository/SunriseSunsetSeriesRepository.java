@@ -0,0 +1,15 @@
+package com.example.lab8.repository;
+
+import com.example.lab8.model.SunriseSunsetSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SunriseSunsetSeriesRepository extends JpaRepository<SunriseSunsetSeries, Long> {
+    Optional<SunriseSunsetSeries> findByLatitudeAndLongitudeAndYear(Double latitude, Double longitude, Integer year);
+
+    List<SunriseSunsetSeries> findByYear(Integer year);
+}
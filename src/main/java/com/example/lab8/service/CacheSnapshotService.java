@@ -0,0 +1,214 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.CacheSnapshotFile;
+import com.example.lab8.config.EntityCacheHolder;
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Persists the location and sunrise/sunset caches to a memory-mapped file and restores them on
+// startup, before the warm-up runs, so a restart serves warm entries instead of rebuilding them.
+// The watermark stored with the file lies a margin before the moment it was written, which covers
+// transactions still open at that moment. On load only what changed after the watermark is asked
+// from the database; entries holding a row that was since written or deleted, or depending on a
+// location or date touched since, are dropped and will be loaded again on first read.
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CacheSnapshotService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSnapshotService.class);
+
+    private static final int ID_CHUNK = 500;
+
+    private static final String UNCHANGED_LOCATIONS =
+            "SELECT id FROM location WHERE id IN (:ids) AND (updated_at IS NULL OR updated_at <= :watermark)";
+    private static final String UNCHANGED_SUNRISE_SUNSETS =
+            "SELECT id FROM sunrise_sunset WHERE id IN (:ids) AND (updated_at IS NULL OR updated_at <= :watermark)";
+    private static final String CHANGED_LOCATIONS = "SELECT id FROM location WHERE updated_at > :watermark";
+    private static final String CHANGED_SUNRISE_SUNSETS =
+            "SELECT COUNT(*) FROM sunrise_sunset WHERE updated_at > :watermark";
+    // Dates of changed rows, and dates linked to changed locations (links carry no timestamp).
+    private static final String CHANGED_DATES =
+            "SELECT ss.date FROM sunrise_sunset ss WHERE ss.updated_at > :watermark "
+                    + "UNION SELECT ss.date FROM location l "
+                    + "JOIN location_sunrise_sunset ls ON ls.location_id = l.id "
+                    + "JOIN sunrise_sunset ss ON ss.id = ls.sunrise_sunset_id "
+                    + "WHERE l.updated_at > :watermark";
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final LocationCacheHolder locationCache;
+    private final SunriseSunsetCacheHolder sunriseSunsetCache;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration watermarkMargin;
+
+    public CacheSnapshotService(NamedParameterJdbcTemplate namedJdbcTemplate,
+                                LocationCacheHolder locationCache,
+                                SunriseSunsetCacheHolder sunriseSunsetCache,
+                                @Value("${cache.snapshot.enabled:false}") boolean enabled,
+                                @Value("${cache.snapshot.path:cache-snapshot.bin}") Path path,
+                                @Value("${cache.snapshot.watermark-margin:PT1M}") Duration watermarkMargin) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.locationCache = locationCache;
+        this.sunriseSunsetCache = sunriseSunsetCache;
+        this.enabled = enabled;
+        this.path = path;
+        this.watermarkMargin = watermarkMargin;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            CacheSnapshotFile.Snapshot snapshot = CacheSnapshotFile.read(path);
+            int restored = restore(snapshot);
+            logger.info("Restored {} of {} cache entries from snapshot {} (watermark {}) in {} ms", restored,
+                    snapshot.locations().size() + snapshot.sunriseSunsets().size(), path, snapshot.watermark(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            // A snapshot only saves queries; without it the caches fill up as usual.
+            logger.warn("Cache snapshot {} ignored", path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.snapshot.interval:PT5M}",
+            initialDelayString = "${cache.snapshot.interval:PT5M}")
+    public void scheduledWrite() {
+        if (enabled) {
+            write();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled) {
+            write();
+        }
+    }
+
+    // The watermark is taken before the entries are copied, so it never postdates their data.
+    synchronized void write() {
+        Instant watermark = Instant.now().minus(watermarkMargin);
+        // Locations read without their sunriseSunsets cannot be written without a session.
+        List<EntityCacheHolder.Entry<Location>> locations = locationCache.entries().stream()
+                .filter(entry -> entry.values().stream()
+                        .allMatch(location -> Hibernate.isInitialized(location.getSunriseSunsets())))
+                .toList();
+        List<EntityCacheHolder.Entry<SunriseSunset>> sunriseSunsets = sunriseSunsetCache.entries();
+        long start = System.nanoTime();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            long size = CacheSnapshotFile.write(path,
+                    new CacheSnapshotFile.Snapshot(watermark, locations, sunriseSunsets));
+            logger.info("Cache snapshot of {} location and {} sunrise/sunset entries written to {} "
+                            + "({} bytes) in {} ms", locations.size(), sunriseSunsets.size(), path, size,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cache snapshot could not be written to {}", path, e);
+        }
+    }
+
+    // Returns the number of entries put back into the caches.
+    int restore(CacheSnapshotFile.Snapshot snapshot) {
+        OffsetDateTime watermark = OffsetDateTime.ofInstant(snapshot.watermark(), ZoneOffset.UTC);
+        MapSqlParameterSource params = new MapSqlParameterSource("watermark", watermark);
+
+        Set<Long> locationIds = new HashSet<>();
+        Set<Long> sunriseSunsetIds = new HashSet<>();
+        for (EntityCacheHolder.Entry<Location> entry : snapshot.locations()) {
+            for (Location location : entry.values()) {
+                locationIds.add(location.getId());
+                location.getSunriseSunsets().forEach(row -> sunriseSunsetIds.add(row.getId()));
+            }
+        }
+        snapshot.sunriseSunsets().forEach(entry -> entry.values().forEach(row -> sunriseSunsetIds.add(row.getId())));
+        Set<Long> unchangedLocations = unchanged(UNCHANGED_LOCATIONS, locationIds, watermark);
+        Set<Long> unchangedSunriseSunsets = unchanged(UNCHANGED_SUNRISE_SUNSETS, sunriseSunsetIds, watermark);
+
+        List<Long> changedLocations = namedJdbcTemplate.queryForList(CHANGED_LOCATIONS, params, Long.class);
+        Set<String> changedTags = new HashSet<>();
+        changedLocations.forEach(id -> changedTags.add(LocationCacheHolder.locationTag(id)));
+        if (!changedLocations.isEmpty()) {
+            changedTags.add(EntityCacheHolder.MEMBERSHIP_TAG);
+        }
+        namedJdbcTemplate.query(CHANGED_DATES, params, rs -> {
+            LocalDate date = rs.getObject(1, LocalDate.class);
+            if (date != null) {
+                changedTags.add(LocationCacheHolder.dateTag(date));
+            }
+        });
+
+        int restored = 0;
+        for (EntityCacheHolder.Entry<Location> entry : snapshot.locations()) {
+            boolean unchanged = Collections.disjoint(entry.tags(), changedTags)
+                    && entry.values().stream().allMatch(location -> unchangedLocations.contains(location.getId())
+                    && location.getSunriseSunsets().stream()
+                    .allMatch(row -> unchangedSunriseSunsets.contains(row.getId())));
+            if (unchanged) {
+                locationCache.put(entry.key(), entry.values(), entry.tags().toArray(String[]::new));
+                restored++;
+            }
+        }
+        // By-date sunrise/sunset lists are not tagged with their date, so any new or moved row
+        // may belong to one of them: the whole cache is only restored if no row was written.
+        Long changedSunriseSunsets = namedJdbcTemplate.queryForObject(CHANGED_SUNRISE_SUNSETS, params, Long.class);
+        if (changedSunriseSunsets == null || changedSunriseSunsets == 0) {
+            for (EntityCacheHolder.Entry<SunriseSunset> entry : snapshot.sunriseSunsets()) {
+                if (entry.values().stream().allMatch(row -> unchangedSunriseSunsets.contains(row.getId()))) {
+                    sunriseSunsetCache.put(entry.key(), entry.values(), entry.tags().toArray(String[]::new));
+                    restored++;
+                }
+            }
+        }
+        return restored;
+    }
+
+    // Ids that still exist and were not written after the watermark; rows without a timestamp
+    // predate the column and therefore the snapshot.
+    private Set<Long> unchanged(String sql, Set<Long> ids, OffsetDateTime watermark) {
+        Set<Long> unchanged = new HashSet<>();
+        List<Long> remaining = new ArrayList<>(ids);
+        for (int from = 0; from < remaining.size(); from += ID_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("ids", remaining.subList(from, Math.min(from + ID_CHUNK, remaining.size())))
+                    .addValue("watermark", watermark);
+            unchanged.addAll(namedJdbcTemplate.queryForList(sql, params, Long.class));
+        }
+        return unchanged;
+    }
+}
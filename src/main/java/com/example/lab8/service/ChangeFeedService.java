@@ -0,0 +1,207 @@
+package com.example.lab8.service;
+
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.exception.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fans committed ChangeEvents out to Server-Sent Events subscribers. Each subscriber has its own
+// pending map keyed by entity and id, so repeated changes to one row collapse into the latest
+// while the client is behind, and at most one delivery task per subscriber is running. When a
+// subscriber falls more than max-pending rows behind, its backlog is dropped and replaced by a
+// single RESYNC event, which bounds the memory a slow consumer can hold.
+@Service
+public class ChangeFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService delivery;
+    private final int maxSubscribers;
+    private final int maxPending;
+    private final Duration timeout;
+
+    public ChangeFeedService(@Value("${change-feed.max-subscribers:256}") int maxSubscribers,
+                             @Value("${change-feed.max-pending:1000}") int maxPending,
+                             @Value("${change-feed.timeout:30m}") Duration timeout) {
+        this.maxSubscribers = maxSubscribers;
+        this.maxPending = maxPending;
+        this.timeout = timeout;
+        AtomicInteger threads = new AtomicInteger();
+        // Unbounded but idle threads expire; a client stuck in a blocking write holds only its own thread.
+        this.delivery = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe() {
+        RequestCounter.increment("changeFeed.subscribe");
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Too many change feed subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        register(emitter);
+        try {
+            emitter.send(SseEmitter.event().comment("connected").reconnectTime(3000));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    Subscriber register(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        return subscriber;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Without a transaction (e.g. the precompute job) the event is delivered right away.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(ChangeEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${change-feed.heartbeat:PT15S}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        delivery.shutdownNow();
+    }
+
+    final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private Map<String, ChangeEvent> pending = new LinkedHashMap<>();
+        private boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(ChangeEvent event) {
+            lock.lock();
+            try {
+                // Re-inserting moves the row to the end, after anything it may depend on.
+                pending.remove(event.key());
+                pending.put(event.key(), event);
+                if (pending.size() > maxPending) {
+                    logger.debug("Change feed subscriber fell {} changes behind, sending resync", pending.size());
+                    pending.clear();
+                    ChangeEvent resync = ChangeEvent.resync();
+                    pending.put(resync.key(), resync);
+                }
+            } finally {
+                lock.unlock();
+            }
+            scheduleDrain();
+        }
+
+        void heartbeat() {
+            lock.lock();
+            try {
+                heartbeatDue = true;
+            } finally {
+                lock.unlock();
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                delivery.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<ChangeEvent> batch;
+                boolean sendHeartbeat;
+                lock.lock();
+                try {
+                    batch = new ArrayList<>(pending.values());
+                    pending = new LinkedHashMap<>();
+                    sendHeartbeat = heartbeatDue && batch.isEmpty();
+                    heartbeatDue = false;
+                } finally {
+                    lock.unlock();
+                }
+                if (batch.isEmpty() && !sendHeartbeat) {
+                    draining.set(false);
+                    // An enqueue between the unlock and the reset above found draining still set.
+                    if (hasWork() && draining.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    return;
+                }
+                try {
+                    if (sendHeartbeat) {
+                        emitter.send(SseEmitter.event().comment("keepalive"));
+                    }
+                    for (ChangeEvent event : batch) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(sequence.incrementAndGet()))
+                                .name(event.entity())
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("Change feed subscriber disconnected: {}", e.getMessage());
+                    subscribers.remove(this);
+                    emitter.completeWithError(e);
+                    draining.set(false);
+                    return;
+                }
+            }
+        }
+
+        private boolean hasWork() {
+            lock.lock();
+            try {
+                return !pending.isEmpty() || heartbeatDue;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.lab8.service;
+
+import com.example.lab8.dto.LocationExportRow;
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.LocationRepository;
+import com.example.lab8.repository.SunriseSunsetRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Writes whole tables as newline-delimited JSON straight from a forward-only database cursor.
+// Rows are serialized as they arrive and the persistence context is cleared in chunks,
+// so memory use does not depend on the table size.
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    // A leap year, counting both ends; longer ranges are split by the client.
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private final SunriseSunsetRepository sunriseSunsetRepository;
+    private final LocationRepository locationRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public long exportSunriseSunsets(OutputStream out) throws IOException {
+        RequestCounter.increment("export.sunriseSunsets");
+        try (Stream<SunriseSunset> rows = sunriseSunsetRepository.streamAll()) {
+            long count = writeNdjson(rows.iterator(), out);
+            logger.debug("Exported {} sunrise/sunset records", count);
+            return count;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportLocations(OutputStream out) throws IOException {
+        RequestCounter.increment("export.locations");
+        try (Stream<Object[]> rows = locationRepository.streamAllWithSunriseSunsetIds()) {
+            long count = writeNdjson(groupByLocation(rows.iterator()), out);
+            logger.debug("Exported {} locations", count);
+            return count;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportSunriseSunsetsByDateRange(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        RequestCounter.increment("export.sunriseSunsetsByDateRange");
+        try (Stream<SunriseSunset> rows = sunriseSunsetRepository.streamByDateBetween(from, to)) {
+            long count = writeNdjson(rows.iterator(), out);
+            logger.debug("Streamed {} sunrise/sunset records from {} to {}", count, from, to);
+            return count;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportLocationsByDateRange(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        RequestCounter.increment("export.locationsByDateRange");
+        try (Stream<Object[]> rows = locationRepository.streamWithSunriseSunsetIdsByDateBetween(from, to)) {
+            long count = writeNdjson(groupByLocation(rows.iterator()), out);
+            logger.debug("Streamed {} locations with sunrise/sunset records from {} to {}", count, from, to);
+            return count;
+        }
+    }
+
+    // Fails fast, before the response is committed to a streaming body.
+    public static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new BadRequestException("The range must not span more than " + MAX_RANGE_DAYS + " days");
+        }
+    }
+
+    <T> long writeNdjson(Iterator<T> rows, OutputStream out) throws IOException {
+        long count = 0;
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            while (rows.hasNext()) {
+                writer.write(rows.next());
+                count++;
+                if (count % CHUNK_SIZE == 0) {
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        out.flush();
+        return count;
+    }
+
+    // Collapses the ordered (location, link) rows into one export row per location.
+    private static Iterator<LocationExportRow> groupByLocation(Iterator<Object[]> rows) {
+        return new Iterator<>() {
+
+            private Object[] pending = rows.hasNext() ? rows.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            @Override
+            public LocationExportRow next() {
+                Object[] first = pending;
+                List<Long> sunriseSunsetIds = new ArrayList<>();
+                Object[] row = first;
+                while (row != null && row[0].equals(first[0])) {
+                    if (row[5] != null) {
+                        sunriseSunsetIds.add((Long) row[5]);
+                    }
+                    row = rows.hasNext() ? rows.next() : null;
+                }
+                pending = row;
+                return new LocationExportRow((Long) first[0], (String) first[1], (String) first[2],
+                        (Double) first[3], (Double) first[4], sunriseSunsetIds);
+            }
+        };
+    }
+}
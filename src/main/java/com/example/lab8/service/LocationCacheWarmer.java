@@ -0,0 +1,97 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Preloads the hottest location keys before the application reports ready (runners complete
+// before the readiness state turns to ACCEPTING_TRAFFIC), then keeps them warm: hot keys are
+// reloaded on a small pool after every invalidation and shortly before they expire, so request
+// threads rarely pay for the entity graph query.
+@Service
+public class LocationCacheWarmer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationCacheWarmer.class);
+
+    private final LocationService locationService;
+    private final LocationCacheHolder locationCache;
+    private final ExecutorService refreshExecutor;
+    private final boolean warmUpEnabled;
+    private final int warmUpDays;
+    private final double aheadRatio;
+    private final Duration idleTimeout;
+    private final int maxKeys;
+
+    public LocationCacheWarmer(LocationService locationService,
+                               LocationCacheHolder locationCache,
+                               @Value("${cache.warm-up.enabled:true}") boolean warmUpEnabled,
+                               @Value("${cache.warm-up.days:2}") int warmUpDays,
+                               @Value("${cache.refresh.threads:2}") int threads,
+                               @Value("${cache.refresh.ahead-ratio:0.8}") double aheadRatio,
+                               @Value("${cache.refresh.idle-timeout:30m}") Duration idleTimeout,
+                               @Value("${cache.refresh.max-keys:64}") int maxKeys) {
+        this.locationService = locationService;
+        this.locationCache = locationCache;
+        this.warmUpEnabled = warmUpEnabled;
+        this.warmUpDays = warmUpDays;
+        this.aheadRatio = aheadRatio;
+        this.idleTimeout = idleTimeout;
+        this.maxKeys = maxKeys;
+        AtomicInteger count = new AtomicInteger();
+        this.refreshExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "location-cache-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        locationCache.setRefreshExecutor(refreshExecutor);
+    }
+
+    // The full list and today's (and the next days') by-date lists are what the UI asks for first.
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmUpEnabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            locationService.getAll();
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            for (int day = 0; day < warmUpDays; day++) {
+                locationService.getLocationsByDate(today.plusDays(day));
+            }
+            logger.info("Location cache warmed up in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            // A cold cache is slower, not broken, so startup goes on.
+            logger.warn("Location cache warm-up failed", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.refresh.interval:PT30S}")
+    public void refreshAhead() {
+        int scheduled = locationCache.refreshAhead(aheadRatio, idleTimeout, maxKeys);
+        if (scheduled > 0) {
+            logger.debug("Scheduled background reload of {} location cache keys", scheduled);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        locationCache.setRefreshExecutor(null);
+        refreshExecutor.shutdownNow();
+    }
+}
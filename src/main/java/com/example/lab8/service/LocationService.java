@@ -1,18 +1,37 @@
 package com.example.lab8.service;
 
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.dto.BulkUpsertResult;
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.KeysetPage;
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.dto.NearbyLocation;
+import com.example.lab8.exception.BadRequestException;
 import com.example.lab8.model.Location;
 import com.example.lab8.model.SunriseSunset;
 import com.example.lab8.repository.LocationRepository;
 import com.example.lab8.repository.SunriseSunsetRepository;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,52 +42,101 @@ public class LocationService {
 
     private final LocationRepository repository;
     private final SunriseSunsetRepository sunriseSunsetRepository;
-    private final Map<String, List<Location>> locationCache;
+    private final LocationCacheHolder locationCache;
+
+    private final TransactionTemplate transactionTemplate;
+    private final LocationSpatialIndex spatialIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SunriseSunsetSeriesService seriesService;
+
+    @Value("${pagination.default-page-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${pagination.max-page-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${bulk.chunk-size:500}")
+    private int bulkChunkSize = 500;
+
+    @Value("${nearby.max-results:100}")
+    private int maxNearbyResults = 100;
 
     @Transactional(readOnly = true)
     public List<Location> getAll() {
-        RequestCounter.increment();
-        String cacheKey = "all_locations";
-        if (locationCache.containsKey(cacheKey)) {
-            logger.debug("Returning cached locations for key: {}", cacheKey);
-            return locationCache.get(cacheKey);
-        }
-        logger.debug("Cache miss, querying database for all locations");
-        List<Location> locations = repository.findAll();
-        locationCache.put(cacheKey, locations);
-        return locations;
+        RequestCounter.increment("location.getAll");
+        return locationCache.getOrLoadHot("all_locations", () -> {
+            logger.debug("Cache miss, querying database for all locations");
+            return repository.findAll();
+        }, LocationCacheHolder.MEMBERSHIP_TAG);
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<Location> getPage(String cursor, Integer size) {
+        RequestCounter.increment("location.getPage");
+        int pageSize = KeysetPage.resolveSize(size, defaultPageSize, maxPageSize);
+        long afterId = KeysetPage.decodeCursor(cursor);
+        List<Location> locations = locationCache.getOrLoad("locations_page_" + afterId + "_" + pageSize, () -> {
+            logger.debug("Cache miss, querying database for {} locations after ID: {}", pageSize, afterId);
+            List<Long> ids = repository.findIdsAfter(afterId, PageRequest.ofSize(pageSize));
+            return ids.isEmpty() ? List.of() : repository.findAllWithSunriseSunsetsByIdIn(ids);
+        }, page -> page.size() < pageSize ? List.of(LocationCacheHolder.MEMBERSHIP_TAG) : List.of());
+        return KeysetPage.of(locations, pageSize, Location::getId);
     }
 
     @Transactional(readOnly = true)
     public Optional<Location> getById(Long id) {
-        RequestCounter.increment();
-        String cacheKey = "location_" + id;
-        if (locationCache.containsKey(cacheKey)) {
-            logger.debug("Returning cached location for key: {}", cacheKey);
-            return Optional.ofNullable(locationCache.get(cacheKey).get(0));
+        RequestCounter.increment("location.getById");
+        List<Location> location = locationCache.getOrLoad("location_" + id, () -> {
+            logger.debug("Cache miss, querying database for location ID: {}", id);
+            // A second-level cache hit skips the entity graph and leaves the collection lazy.
+            return repository.findById(id).map(found -> {
+                Hibernate.initialize(found.getSunriseSunsets());
+                return List.of(found);
+            }).orElse(List.of());
+        }, LocationCacheHolder.locationTag(id));
+        return location.stream().findFirst();
+    }
+
+    // Views without sunriseSunsets read scalar rows only: no join, no managed entities, no cache.
+    @Transactional(readOnly = true)
+    public List<Object> getAll(LocationView view) {
+        if (view.needsSunriseSunsets()) {
+            return getAll().stream().map(view::render).toList();
+        }
+        RequestCounter.increment("location.getAllSummaries");
+        return repository.findAllSummaries().stream().map(view::render).toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Object> getById(Long id, LocationView view) {
+        if (view.needsSunriseSunsets()) {
+            return getById(id).map(view::render);
         }
-        logger.debug("Cache miss, querying database for location ID: {}", id);
-        Optional<Location> location = repository.findById(id);
-        location.ifPresent(l -> locationCache.put(cacheKey, List.of(l)));
-        return location;
+        RequestCounter.increment("location.getSummaryById");
+        return repository.findSummaryById(id).map(view::render);
     }
 
     @Transactional
     public Location create(Location location, List<Long> sunriseSunsetIds) {
-        RequestCounter.increment();
+        RequestCounter.increment("location.create");
         if (sunriseSunsetIds != null && !sunriseSunsetIds.isEmpty()) {
             List<SunriseSunset> sunriseSunsets = sunriseSunsetRepository.findAllById(sunriseSunsetIds);
             location.getSunriseSunsets().addAll(sunriseSunsets);
         }
         Location saved = repository.save(location);
-        locationCache.clear();
-        logger.debug("Cache cleared after creating location");
+        eventPublisher.publishEvent(ChangeEvent.upsert(saved));
+        spatialIndex.markDirty();
+        // Ids come from location_seq, so a 404 for this id may already be cached.
+        locationCache.invalidateLocations(List.of(saved.getId()));
+        locationCache.invalidateMembership();
+        locationCache.invalidateDates(sunriseSunsetDates(List.of(saved)));
+        logger.debug("Cache invalidated after creating location ID: {}", saved.getId());
         return saved;
     }
 
     @Transactional
     public Optional<Location> update(Long id, Location updatedData, List<Long> sunriseSunsetIds) {
-        RequestCounter.increment();
+        RequestCounter.increment("location.update");
         return repository.findById(id).map(location -> {
             location.setName(updatedData.getName());
             location.setCountry(updatedData.getCountry());
@@ -77,68 +145,173 @@ public class LocationService {
                 location.getSunriseSunsets().clear();
                 List<SunriseSunset> sunriseSunsets = sunriseSunsetRepository.findAllById(sunriseSunsetIds);
                 location.getSunriseSunsets().addAll(sunriseSunsets);
+                location.touch();
             }
             Location saved = repository.save(location);
-            locationCache.clear();
-            logger.debug("Cache cleared after updating location ID: {}", id);
+            eventPublisher.publishEvent(ChangeEvent.upsert(saved));
+            locationCache.invalidateLocations(List.of(id));
+            locationCache.invalidateDates(sunriseSunsetDates(List.of(saved)));
+            logger.debug("Cache invalidated after updating location ID: {}", id);
             return saved;
         });
     }
 
     @Transactional
     public boolean delete(Long id) {
-        RequestCounter.increment();
+        RequestCounter.increment("location.delete");
         return repository.findById(id).map(location -> {
             repository.delete(location);
-            locationCache.clear();
-            logger.debug("Cache cleared after deleting location ID: {}", id);
+            eventPublisher.publishEvent(ChangeEvent.deleted(ChangeEvent.LOCATION, id));
+            spatialIndex.markDirty();
+            locationCache.invalidateLocations(List.of(id));
+            logger.debug("Cache invalidated after deleting location ID: {}", id);
             return true;
         }).orElse(false);
     }
 
+    // Locations linked to a row that date, plus those whose coordinates only have a yearly series,
+    // cached per date with the decoded ones merged in. Besides the date and the locations listed,
+    // an entry depends on the year's series and, once the year has any, on which locations exist,
+    // since a new location at a series coordinate joins the list.
     @Transactional(readOnly = true)
-    public List<Location> getLocationsByDate(String date) {
-        RequestCounter.increment();
-        String cacheKey = "locations_date_" + date;
+    public List<Location> getLocationsByDate(LocalDate date) {
+        RequestCounter.increment("location.getLocationsByDate");
+        int year = date.getYear();
+        return locationCache.getOrLoadHot("locations_date_" + date, () -> {
+            logger.debug("Cache miss, querying database for locations by date: {}", date);
+            List<Location> linked = repository.findLocationsBySunriseSunsetDate(date);
+            List<Location> decoded = seriesService.decodeLocations(date);
+            return decoded.isEmpty() ? linked : merge(date, linked, decoded);
+        }, values -> seriesService.hasSeries(year)
+                ? List.of(LocationCacheHolder.dateTag(date), LocationCacheHolder.seriesYearTag(year),
+                LocationCacheHolder.MEMBERSHIP_TAG)
+                : List.of(LocationCacheHolder.dateTag(date), LocationCacheHolder.seriesYearTag(year)));
+    }
 
-        if (locationCache.containsKey(cacheKey)) {
-            logger.debug("Returning cached locations for key: {}", cacheKey);
-            return locationCache.get(cacheKey);
+    // The merged order comes from the database, since String.compareTo does not follow its collation.
+    private List<Location> merge(LocalDate date, List<Location> linked, List<Location> decoded) {
+        Map<Long, Location> byId = new LinkedHashMap<>();
+        linked.forEach(location -> byId.put(location.getId(), location));
+        decoded.forEach(location -> byId.putIfAbsent(location.getId(), location));
+        List<Location> merged = new ArrayList<>(byId.size());
+        for (Long id : repository.findIdsOnDateOrWithSeriesOrderByName(date.getYear(), date)) {
+            Location location = byId.remove(id);
+            if (location != null) {
+                merged.add(location);
+            }
         }
+        // Entries the id query no longer sees, written between the two reads.
+        merged.addAll(byId.values());
+        return merged;
+    }
 
-        logger.debug("Cache miss, querying database for locations by date: {}", date);
-        List<Location> locations = repository.findLocationsBySunriseSunsetDate(date);
-        locationCache.put(cacheKey, locations);
-        return locations;
+    @Transactional(readOnly = true)
+    public List<NearbyLocation> findNearby(double latitude, double longitude, Integer k, Double radiusKm) {
+        RequestCounter.increment("location.findNearby");
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new BadRequestException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+        int limit = k != null ? k : 10;
+        if (limit < 1 || limit > maxNearbyResults) {
+            throw new BadRequestException("k must be between 1 and " + maxNearbyResults);
+        }
+        if (radiusKm != null && radiusKm <= 0) {
+            throw new BadRequestException("radiusKm must be positive");
+        }
+        List<LocationSpatialIndex.Neighbor> neighbors = spatialIndex.nearest(latitude, longitude, limit, radiusKm);
+        Map<Long, Location> locations = repository.findAllById(neighbors.stream()
+                        .map(LocationSpatialIndex.Neighbor::id)
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+        // A location deleted since the index was built is simply skipped.
+        return neighbors.stream()
+                .filter(neighbor -> locations.containsKey(neighbor.id()))
+                .map(neighbor -> NearbyLocation.of(locations.get(neighbor.id()), neighbor.distanceKm()))
+                .toList();
     }
 
-    @Transactional
-    public List<Location> bulkCreateOrUpdate(List<Location> locations, List<Long> sunriseSunsetIds) {
-        RequestCounter.increment();
+    // Upserts in chunks, each in its own transaction: one query resolves the chunk's existing
+    // rows, new rows get sequence ids so Hibernate can batch their inserts.
+    public BulkUpsertResult bulkCreateOrUpdate(List<Location> locations, List<Long> sunriseSunsetIds) {
+        RequestCounter.increment("location.bulkCreateOrUpdate");
+        long start = System.nanoTime();
         List<SunriseSunset> sunriseSunsets = sunriseSunsetIds != null && !sunriseSunsetIds.isEmpty()
                 ? sunriseSunsetRepository.findAllById(sunriseSunsetIds)
                 : List.of();
 
-        List<Location> processedLocations = locations.stream()
-                .map(location -> {
-                    Optional<Location> existing = repository.findById(location.getId() != null ? location.getId() : 0L);
-                    if (existing.isPresent()) {
-                        Location toUpdate = existing.get();
-                        toUpdate.setName(location.getName());
-                        toUpdate.setCountry(location.getCountry());
-                        toUpdate.getSunriseSunsets().clear();
-                        toUpdate.getSunriseSunsets().addAll(sunriseSunsets);
-                        return toUpdate;
-                    } else {
-                        location.getSunriseSunsets().addAll(sunriseSunsets);
-                        return location;
-                    }
-                })
-                .collect(Collectors.toList());
-
-        List<Location> savedLocations = repository.saveAll(processedLocations);
-        locationCache.clear();
-        logger.debug("Cache cleared after bulk create/update of {} locations", savedLocations.size());
-        return savedLocations;
-    }
-}
\ No newline at end of file
+        List<Location> savedLocations = new ArrayList<>(locations.size());
+        List<BulkUpsertResult.Chunk> chunks = new ArrayList<>();
+        for (int from = 0; from < locations.size(); from += bulkChunkSize) {
+            List<Location> chunk = locations.subList(from, Math.min(from + bulkChunkSize, locations.size()));
+            long chunkStart = System.nanoTime();
+            ChunkOutcome outcome = transactionTemplate.execute(status -> upsertChunk(chunk, sunriseSunsets));
+            savedLocations.addAll(outcome.saved());
+            BulkUpsertResult.Chunk report = new BulkUpsertResult.Chunk(chunks.size(), chunk.size(),
+                    outcome.inserted(), chunk.size() - outcome.inserted(), elapsedMillis(chunkStart));
+            chunks.add(report);
+            logger.debug("Bulk chunk {} upserted {} locations in {} ms", report.index(), report.size(), report.millis());
+        }
+        return new BulkUpsertResult(savedLocations, chunks, elapsedMillis(start));
+    }
+
+    private ChunkOutcome upsertChunk(List<Location> chunk, List<SunriseSunset> sunriseSunsets) {
+        Set<Long> ids = chunk.stream()
+                .map(Location::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Location> existing = ids.isEmpty() ? Map.of() : repository.findAllWithSunriseSunsetsByIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+
+        List<Location> processed = new ArrayList<>(chunk.size());
+        int inserted = 0;
+        for (Location location : chunk) {
+            Location toUpdate = location.getId() != null ? existing.get(location.getId()) : null;
+            if (toUpdate != null) {
+                toUpdate.setName(location.getName());
+                toUpdate.setCountry(location.getCountry());
+                toUpdate.getSunriseSunsets().clear();
+                toUpdate.getSunriseSunsets().addAll(sunriseSunsets);
+                toUpdate.touch();
+                processed.add(toUpdate);
+            } else {
+                Location created = new Location(location.getName(), location.getCountry(),
+                        location.getLatitude(), location.getLongitude());
+                created.getSunriseSunsets().addAll(sunriseSunsets);
+                processed.add(created);
+                inserted++;
+            }
+        }
+
+        List<Location> saved = repository.saveAll(processed);
+        saved.forEach(location -> eventPublisher.publishEvent(ChangeEvent.upsert(location)));
+        if (inserted > 0) {
+            spatialIndex.markDirty();
+            locationCache.invalidateMembership();
+        }
+        // Saved ids rather than requested ones, so a cached 404 for a newly inserted id goes too.
+        locationCache.invalidateLocations(saved.stream().map(Location::getId).filter(Objects::nonNull).toList());
+        locationCache.invalidateDates(sunriseSunsetDates(saved));
+        logger.debug("Cache invalidated after bulk create/update of {} locations", saved.size());
+        return new ChunkOutcome(saved, inserted);
+    }
+
+    public Map<String, Object> getCacheStatistics() {
+        return locationCache.getStatistics();
+    }
+
+    private record ChunkOutcome(List<Location> saved, int inserted) {
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static Set<LocalDate> sunriseSunsetDates(List<Location> locations) {
+        return locations.stream()
+                .flatMap(location -> location.getSunriseSunsets().stream())
+                .map(SunriseSunset::getDate)
+                .collect(Collectors.toSet());
+    }
+}
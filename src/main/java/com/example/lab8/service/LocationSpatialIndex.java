@@ -0,0 +1,291 @@
+package com.example.lab8.service;
+
+import com.example.lab8.repository.LocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// In-memory KD-tree over location coordinates. Points are stored as unit vectors on the sphere,
+// so the straight-line (chord) distance orders them exactly like the great-circle distance and
+// the tree needs no special handling of the antimeridian or the poles. The tree is an immutable
+// snapshot in primitive arrays; writes mark it dirty after commit and the next query rebuilds it.
+@Component
+public class LocationSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationSpatialIndex.class);
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final LocationRepository repository;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile Tree tree;
+    private volatile boolean dirty = true;
+
+    public LocationSpatialIndex(LocationRepository repository) {
+        this.repository = repository;
+    }
+
+    public record Neighbor(long id, double distanceKm) {
+    }
+
+    // The k nearest locations to the point, closest first, optionally limited to radiusKm.
+    public List<Neighbor> nearest(double latitude, double longitude, int k, Double radiusKm) {
+        Tree current = current();
+        double maxChord = radiusKm == null ? 2.0 : 2.0 * Math.sin(Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI) / 2);
+        return current.nearest(latitude, longitude, k, maxChord * maxChord);
+    }
+
+    public int size() {
+        return current().ids.length;
+    }
+
+    public void markDirty() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty = true;
+                }
+            });
+        } else {
+            dirty = true;
+        }
+    }
+
+    // A reader that finds the tree dirty while another thread rebuilds it keeps using the previous
+    // snapshot instead of waiting; only the very first build blocks.
+    private Tree current() {
+        Tree snapshot = tree;
+        if (!dirty && snapshot != null) {
+            return snapshot;
+        }
+        if (snapshot != null && !rebuildLock.tryLock()) {
+            return snapshot;
+        }
+        if (snapshot == null) {
+            rebuildLock.lock();
+        }
+        try {
+            if (dirty || tree == null) {
+                dirty = false;
+                try {
+                    tree = build();
+                } catch (RuntimeException e) {
+                    dirty = true;
+                    throw e;
+                }
+            }
+            return tree;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Tree build() {
+        long start = System.nanoTime();
+        List<Object[]> rows = repository.findCoordinates();
+        int count = rows.size();
+        long[] ids = new long[count];
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            Object[] row = rows.get(i);
+            ids[i] = (Long) row[0];
+            latitudes[i] = (Double) row[1];
+            longitudes[i] = (Double) row[2];
+        }
+        Tree built = new Tree(ids, latitudes, longitudes);
+        logger.debug("Spatial index rebuilt with {} locations in {} us", count, (System.nanoTime() - start) / 1000);
+        return built;
+    }
+
+    // Implicit balanced tree: the node of [lo, hi) is at the middle index, its left subtree
+    // is [lo, mid) and its right subtree (mid, hi), split on axis depth % 3.
+    static final class Tree {
+
+        private final long[] ids;
+        private final double[][] coordinates;
+
+        Tree(long[] ids, double[] latitudes, double[] longitudes) {
+            this.ids = ids;
+            this.coordinates = new double[3][ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                double lat = Math.toRadians(latitudes[i]);
+                double lon = Math.toRadians(longitudes[i]);
+                coordinates[0][i] = Math.cos(lat) * Math.cos(lon);
+                coordinates[1][i] = Math.cos(lat) * Math.sin(lon);
+                coordinates[2][i] = Math.sin(lat);
+            }
+            build(0, ids.length, 0);
+        }
+
+        List<Neighbor> nearest(double latitude, double longitude, int k, double maxChordSquared) {
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            double[] query = {Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+            Heap heap = new Heap(Math.min(k, ids.length), maxChordSquared);
+            search(0, ids.length, 0, query, heap);
+
+            int found = heap.size;
+            List<Neighbor> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                result.add(null);
+            }
+            // Popping the max-heap yields the farthest first.
+            for (int i = found - 1; i >= 0; i--) {
+                double chord = Math.sqrt(heap.keys[0]);
+                int index = heap.values[0];
+                heap.pop();
+                result.set(i, new Neighbor(ids[index], 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, chord / 2))));
+            }
+            return result;
+        }
+
+        private void search(int lo, int hi, int depth, double[] query, Heap heap) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double dx = query[0] - coordinates[0][mid];
+            double dy = query[1] - coordinates[1][mid];
+            double dz = query[2] - coordinates[2][mid];
+            heap.offer(dx * dx + dy * dy + dz * dz, mid);
+
+            int axis = depth % 3;
+            double diff = query[axis] - coordinates[axis][mid];
+            if (diff < 0) {
+                search(lo, mid, depth + 1, query, heap);
+                if (diff * diff < heap.bound()) {
+                    search(mid + 1, hi, depth + 1, query, heap);
+                }
+            } else {
+                search(mid + 1, hi, depth + 1, query, heap);
+                if (diff * diff < heap.bound()) {
+                    search(lo, mid, depth + 1, query, heap);
+                }
+            }
+        }
+
+        private void build(int lo, int hi, int depth) {
+            if (hi - lo <= 1) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, coordinates[depth % 3]);
+            build(lo, mid, depth + 1);
+            build(mid + 1, hi, depth + 1);
+        }
+
+        // Quickselect: afterwards keys[lo..k) <= keys[k] <= keys(k..right].
+        private void select(int lo, int right, int k, double[] keys) {
+            while (right > lo) {
+                double pivot = keys[(lo + right) >>> 1];
+                int i = lo;
+                int j = right;
+                while (i <= j) {
+                    while (keys[i] < pivot) {
+                        i++;
+                    }
+                    while (keys[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            for (double[] axis : coordinates) {
+                double value = axis[a];
+                axis[a] = axis[b];
+                axis[b] = value;
+            }
+        }
+    }
+
+    // Bounded max-heap of squared chord distances and point indexes.
+    private static final class Heap {
+
+        private final double[] keys;
+        private final int[] values;
+        private final double limit;
+        private int size;
+
+        Heap(int capacity, double limit) {
+            this.keys = new double[capacity];
+            this.values = new int[capacity];
+            this.limit = limit;
+        }
+
+        double bound() {
+            return size < keys.length ? limit : Math.min(limit, keys[0]);
+        }
+
+        void offer(double key, int value) {
+            if (keys.length == 0 || key > limit) {
+                return;
+            }
+            if (size < keys.length) {
+                int i = size++;
+                while (i > 0 && keys[(i - 1) / 2] < key) {
+                    keys[i] = keys[(i - 1) / 2];
+                    values[i] = values[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                keys[i] = key;
+                values[i] = value;
+            } else if (key < keys[0]) {
+                siftDown(key, value);
+            }
+        }
+
+        void pop() {
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                siftDown(key, value);
+            }
+        }
+
+        private void siftDown(double key, int value) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] > keys[child]) {
+                    child++;
+                }
+                if (keys[child] <= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+    }
+}
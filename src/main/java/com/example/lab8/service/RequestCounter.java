@@ -1,18 +1,120 @@
 package com.example.lab8.service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 public class RequestCounter {
 
-    private static long requestCount = 0;
+    private static final int[] WINDOWS_SECONDS = {60, 300, 900};
+
+    private static final Counter TOTAL = new Counter();
+    private static final Map<String, Counter> BY_METHOD = new ConcurrentHashMap<>();
+    private static final Map<Integer, Counter> BY_STATUS = new ConcurrentHashMap<>();
+
+    private RequestCounter() {
+    }
+
+    public static void increment(String method) {
+        TOTAL.increment();
+        BY_METHOD.computeIfAbsent(method, key -> new Counter()).increment();
+    }
+
+    public static void recordStatus(int status) {
+        BY_STATUS.computeIfAbsent(status, key -> new Counter()).increment();
+    }
+
+    public static long getRequestCount() {
+        return TOTAL.count();
+    }
+
+    public static Map<String, Object> getBreakdown() {
+        Map<String, Object> methods = new TreeMap<>();
+        BY_METHOD.forEach((method, counter) -> methods.put(method, counter.snapshot()));
+        Map<String, Object> statuses = new TreeMap<>();
+        BY_STATUS.forEach((status, counter) -> statuses.put(String.valueOf(status), counter.snapshot()));
 
-    public static synchronized void increment() {
-        requestCount++;
+        Map<String, Object> result = new LinkedHashMap<>(TOTAL.snapshot());
+        result.put("methods", methods);
+        result.put("statuses", statuses);
+        return result;
     }
 
-    public static synchronized long getRequestCount() {
-        return requestCount;
+    public static void reset() {
+        TOTAL.reset();
+        BY_METHOD.clear();
+        BY_STATUS.clear();
     }
 
-    public static synchronized void reset() {
-        requestCount = 0;
+    // A LongAdder total plus one LongAdder per second of the longest window, so request threads
+    // never contend on a shared monitor or CAS loop. Buckets are recycled lazily by the first
+    // writer of a new second, which swaps in a fresh bucket rather than resetting the old one, so
+    // an increment racing the swap lands in one bucket or the other and is never wiped. Readers
+    // only sum buckets whose second is inside the window.
+    private static final class Counter {
+
+        private static final int BUCKETS = WINDOWS_SECONDS[WINDOWS_SECONDS.length - 1];
+
+        private final LongAdder total = new LongAdder();
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+        Counter() {
+            clearBuckets();
+        }
+
+        void increment() {
+            total.increment();
+            long second = currentSecond();
+            int index = (int) (second % BUCKETS);
+            Bucket bucket = buckets.get(index);
+            while (bucket.second() < second) {
+                Bucket fresh = new Bucket(second, new LongAdder());
+                bucket = buckets.compareAndSet(index, bucket, fresh) ? fresh : buckets.get(index);
+            }
+            bucket.count().increment();
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", total.sum());
+            long now = currentSecond();
+            for (int window : WINDOWS_SECONDS) {
+                long sum = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    Bucket bucket = buckets.get(i);
+                    long age = now - bucket.second();
+                    if (age >= 0 && age < window) {
+                        sum += bucket.count().sum();
+                    }
+                }
+                result.put("rate" + (window / 60) + "m", (double) sum / window);
+            }
+            return result;
+        }
+
+        void reset() {
+            total.reset();
+            clearBuckets();
+        }
+
+        private void clearBuckets() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, new Bucket(0, new LongAdder()));
+            }
+        }
+
+        private static long currentSecond() {
+            return System.currentTimeMillis() / 1000;
+        }
+
+        private record Bucket(long second, LongAdder count) {
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package com.example.lab8.service;
+
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.LocationView;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Version counters behind the ETags of the location and sunrise/sunset reads. Every version is
+// drawn from one sequence, so a value is never reused for the same resource, and the boot epoch
+// keeps tags issued before a restart from matching. Counters advance after completion, i.e. after
+// the caches have dropped their stale entries, so a tag read before loading never labels data
+// older than itself. A rolled-back write advances them too, which only costs one full response.
+@Component
+public class ResourceVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> locationStamps = new ConcurrentHashMap<>();
+    private volatile long locationVersion;
+    private volatile long sunriseSunsetVersion;
+    private volatile long resyncVersion;
+
+    public String locations() {
+        return locations(LocationView.FULL);
+    }
+
+    // Only views that embed sunrise/sunset records depend on their version.
+    public String locations(LocationView view) {
+        long version = view.needsSunriseSunsets() ? Math.max(locationVersion, sunriseSunsetVersion) : locationVersion;
+        return tag(version, view.variant());
+    }
+
+    public String location(long id) {
+        return location(id, LocationView.FULL);
+    }
+
+    public String location(long id, LocationView view) {
+        long stamp = Math.max(locationStamps.getOrDefault(id, 0L), resyncVersion);
+        return tag(view.needsSunriseSunsets() ? Math.max(stamp, sunriseSunsetVersion) : stamp, view.variant());
+    }
+
+    public String sunriseSunsets() {
+        return tag(sunriseSunsetVersion, "");
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onChange(ChangeEvent event) {
+        long version = sequence.incrementAndGet();
+        switch (event.entity()) {
+            case ChangeEvent.LOCATION -> {
+                // Deleted ids keep their stamp, so a stale tag cannot match the id again.
+                locationStamps.put(event.id(), version);
+                locationVersion = version;
+            }
+            case ChangeEvent.SUNRISE_SUNSET -> sunriseSunsetVersion = version;
+            default -> {
+                // Every tag now includes a version newer than any cleared stamp.
+                resyncVersion = version;
+                locationVersion = version;
+                sunriseSunsetVersion = version;
+                locationStamps.clear();
+            }
+        }
+    }
+
+    private String tag(long version, String variant) {
+        return "\"" + epoch + "-" + version + (variant.isEmpty() ? "" : "-" + variant) + "\"";
+    }
+}
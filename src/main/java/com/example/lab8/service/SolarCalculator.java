@@ -0,0 +1,113 @@
+package com.example.lab8.service;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Sunrise and sunset from the NOAA solar position equations (Meeus, "Astronomical Algorithms").
+// Times are minutes after UTC midnight of the requested date and may fall outside [0, 1440)
+// far from Greenwich; NaN means the sun does not cross the horizon that day (polar day or night).
+// Accurate to about a minute between latitudes +-72 degrees.
+public final class SolarCalculator {
+
+    private static final double JULIAN_DAY_UNIX_EPOCH = 2440587.5;
+    private static final double JULIAN_DAY_J2000 = 2451545.0;
+    private static final double DAYS_PER_CENTURY = 36525.0;
+    private static final double MINUTES_PER_DAY = 1440.0;
+    // Geometric horizon plus refraction (34') and the solar semi-diameter (16').
+    private static final double COS_ZENITH = Math.cos(Math.toRadians(90.833));
+
+    private SolarCalculator() {
+    }
+
+    public static double sunrise(double latitude, double longitude, LocalDate date) {
+        return event(latitude, longitude, date.toEpochDay(), true);
+    }
+
+    public static double sunset(double latitude, double longitude, LocalDate date) {
+        return event(latitude, longitude, date.toEpochDay(), false);
+    }
+
+    // Fills sunrise[i] and sunset[i] for firstDate + i days at one coordinate.
+    public static void calculate(double latitude, double longitude, LocalDate firstDate, int days,
+                                 double[] sunrise, double[] sunset) {
+        checkCapacity(days, sunrise, sunset);
+        long firstEpochDay = firstDate.toEpochDay();
+        for (int i = 0; i < days; i++) {
+            sunrise[i] = event(latitude, longitude, firstEpochDay + i, true);
+            sunset[i] = event(latitude, longitude, firstEpochDay + i, false);
+        }
+    }
+
+    // Fills sunrise[i] and sunset[i] for (latitudes[i], longitudes[i]) on one date.
+    public static void calculate(double[] latitudes, double[] longitudes, LocalDate date,
+                                 double[] sunrise, double[] sunset) {
+        if (longitudes.length != latitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes must have the same length");
+        }
+        checkCapacity(latitudes.length, sunrise, sunset);
+        long epochDay = date.toEpochDay();
+        for (int i = 0; i < latitudes.length; i++) {
+            sunrise[i] = event(latitudes[i], longitudes[i], epochDay, true);
+            sunset[i] = event(latitudes[i], longitudes[i], epochDay, false);
+        }
+    }
+
+    // Formats minutes after midnight as the "HH:mm" used by SunriseSunset, wrapping into the day.
+    public static String format(double minutes) {
+        if (Double.isNaN(minutes)) {
+            return null;
+        }
+        long rounded = Math.floorMod(Math.round(minutes), (long) MINUTES_PER_DAY);
+        return String.format(Locale.ROOT, "%02d:%02d", rounded / 60, rounded % 60);
+    }
+
+    // Solves at local solar noon, then once more at the first estimate, which moves the result
+    // by well under a minute.
+    private static double event(double latitude, double longitude, long epochDay, boolean rising) {
+        double minutes = eventAt(latitude, longitude, epochDay, 720.0 - 4.0 * longitude, rising);
+        if (Double.isNaN(minutes)) {
+            return minutes;
+        }
+        return eventAt(latitude, longitude, epochDay, minutes, rising);
+    }
+
+    private static double eventAt(double latitude, double longitude, long epochDay, double minutes,
+                                  boolean rising) {
+        double t = (epochDay + JULIAN_DAY_UNIX_EPOCH + minutes / MINUTES_PER_DAY - JULIAN_DAY_J2000)
+                / DAYS_PER_CENTURY;
+
+        double meanLongitude = Math.toRadians((280.46646 + t * (36000.76983 + t * 0.0003032)) % 360.0);
+        double meanAnomaly = Math.toRadians(357.52911 + t * (35999.05029 - 0.0001537 * t));
+        double eccentricity = 0.016708634 - t * (0.000042037 + 0.0000001267 * t);
+        double center = Math.sin(meanAnomaly) * (1.914602 - t * (0.004817 + 0.000014 * t))
+                + Math.sin(2 * meanAnomaly) * (0.019993 - 0.000101 * t)
+                + Math.sin(3 * meanAnomaly) * 0.000289;
+        double omega = Math.toRadians(125.04 - 1934.136 * t);
+        double apparentLongitude = meanLongitude + Math.toRadians(center - 0.00569 - 0.00478 * Math.sin(omega));
+        double meanObliquity = 23.0 + (26.0 + (21.448 - t * (46.815 + t * (0.00059 - t * 0.001813))) / 60.0) / 60.0;
+        double obliquity = Math.toRadians(meanObliquity + 0.00256 * Math.cos(omega));
+
+        double declination = Math.asin(Math.sin(obliquity) * Math.sin(apparentLongitude));
+        double y = Math.tan(obliquity / 2) * Math.tan(obliquity / 2);
+        double equationOfTime = 4.0 * Math.toDegrees(y * Math.sin(2 * meanLongitude)
+                - 2 * eccentricity * Math.sin(meanAnomaly)
+                + 4 * eccentricity * y * Math.sin(meanAnomaly) * Math.cos(2 * meanLongitude)
+                - 0.5 * y * y * Math.sin(4 * meanLongitude)
+                - 1.25 * eccentricity * eccentricity * Math.sin(2 * meanAnomaly));
+
+        double latitudeRad = Math.toRadians(latitude);
+        double cosHourAngle = COS_ZENITH / (Math.cos(latitudeRad) * Math.cos(declination))
+                - Math.tan(latitudeRad) * Math.tan(declination);
+        if (cosHourAngle < -1.0 || cosHourAngle > 1.0) {
+            return Double.NaN;
+        }
+        double hourAngle = Math.toDegrees(Math.acos(cosHourAngle));
+        return 720.0 - 4.0 * (longitude + (rising ? hourAngle : -hourAngle)) - equationOfTime;
+    }
+
+    private static void checkCapacity(int count, double[] sunrise, double[] sunset) {
+        if (sunrise.length < count || sunset.length < count) {
+            throw new IllegalArgumentException("Output arrays must hold at least " + count + " values");
+        }
+    }
+}
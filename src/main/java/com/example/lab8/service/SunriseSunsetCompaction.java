@@ -0,0 +1,68 @@
+package com.example.lab8.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+// Merges sunrise_sunset rows sharing a date and coordinates into the one with the lowest id, so
+// the natural-key unique index can be created over tables filled before it existed. Links to the
+// merged rows are repointed to the kept row (without creating duplicate links), the locations
+// concerned are touched, and the merged rows are deleted, all in one transaction.
+@Component
+public class SunriseSunsetCompaction {
+
+    private static final Logger logger = LoggerFactory.getLogger(SunriseSunsetCompaction.class);
+
+    private static final String DUPLICATES =
+            "SELECT id, keep_id FROM (SELECT id, MIN(id) OVER (PARTITION BY date, latitude, longitude) AS keep_id "
+                    + "FROM sunrise_sunset WHERE date IS NOT NULL AND latitude IS NOT NULL "
+                    + "AND longitude IS NOT NULL) d WHERE id <> keep_id";
+    private static final String COUNT_DUPLICATES = "SELECT COUNT(*) FROM (" + DUPLICATES + ") dup";
+    private static final String TOUCH_LOCATIONS =
+            "UPDATE location SET updated_at = ? WHERE id IN (SELECT ls.location_id FROM location_sunrise_sunset ls "
+                    + "JOIN (" + DUPLICATES + ") dup ON dup.id = ls.sunrise_sunset_id)";
+    private static final String REPOINT_LINKS =
+            "INSERT INTO location_sunrise_sunset (location_id, sunrise_sunset_id) "
+                    + "SELECT DISTINCT ls.location_id, dup.keep_id FROM location_sunrise_sunset ls "
+                    + "JOIN (" + DUPLICATES + ") dup ON dup.id = ls.sunrise_sunset_id "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM location_sunrise_sunset kept "
+                    + "WHERE kept.location_id = ls.location_id AND kept.sunrise_sunset_id = dup.keep_id)";
+    private static final String DELETE_LINKS =
+            "DELETE FROM location_sunrise_sunset WHERE sunrise_sunset_id IN (SELECT id FROM (" + DUPLICATES + ") dup)";
+    private static final String DELETE_ROWS =
+            "DELETE FROM sunrise_sunset WHERE id IN (SELECT id FROM (" + DUPLICATES + ") dup)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SunriseSunsetCompaction(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public record Result(int removedRows, int repointedLinks, int touchedLocations) {
+    }
+
+    // A no-op costing one index scan once the table holds no duplicates.
+    public Result compact() {
+        Long duplicates = jdbcTemplate.queryForObject(COUNT_DUPLICATES, Long.class);
+        if (duplicates == null || duplicates == 0) {
+            return new Result(0, 0, 0);
+        }
+        Result result = transactionTemplate.execute(status -> {
+            int touched = jdbcTemplate.update(TOUCH_LOCATIONS, OffsetDateTime.now(ZoneOffset.UTC));
+            int repointed = jdbcTemplate.update(REPOINT_LINKS);
+            jdbcTemplate.update(DELETE_LINKS);
+            int removed = jdbcTemplate.update(DELETE_ROWS);
+            return new Result(removed, repointed, touched);
+        });
+        logger.info("Merged {} duplicate sunrise/sunset rows; {} links repointed for {} locations",
+                result.removedRows(), result.repointedLinks(), result.touchedLocations());
+        return result;
+    }
+}
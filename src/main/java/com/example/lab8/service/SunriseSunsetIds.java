@@ -0,0 +1,80 @@
+package com.example.lab8.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ids for sunrise_sunset rows inserted over JDBC. Each nextval of the pooled sequence owns the
+// block (value - 49 .. value], the same blocks Hibernate's pooled optimizer hands out, so these
+// ids never collide with entity inserts. The rest of a block is kept for the next caller.
+// nextval runs outside the lock, which only guards the kept range, so a request thread never
+// holds a monitor across a database round-trip (that would pin a virtual thread's carrier).
+// Callers refilling at the same time each get their own block; a remainder that cannot be kept
+// because another caller published one first is skipped, leaving a gap in the ids.
+@Component
+public class SunriseSunsetIds {
+
+    // Must match the allocationSize of sunrise_sunset_seq on SunriseSunset.
+    private static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long last = -1;
+
+    public SunriseSunsetIds(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long[] reserve(int count) {
+        long[] ids = new long[count];
+        int taken = takeKept(ids);
+        while (taken < count) {
+            long blockLast = nextBlock();
+            long blockNext = blockLast - BLOCK_SIZE + 1;
+            while (taken < count && blockNext <= blockLast) {
+                ids[taken++] = blockNext++;
+            }
+            if (blockNext <= blockLast) {
+                keep(blockNext, blockLast);
+            }
+        }
+        return ids;
+    }
+
+    private int takeKept(long[] ids) {
+        lock.lock();
+        try {
+            int taken = 0;
+            while (taken < ids.length && next <= last) {
+                ids[taken++] = next++;
+            }
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void keep(long blockNext, long blockLast) {
+        lock.lock();
+        try {
+            if (next > last) {
+                next = blockNext;
+                last = blockLast;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Values below BLOCK_SIZE would start a block at or below zero; the pooled optimizer skips them too.
+    private long nextBlock() {
+        while (true) {
+            Long value = jdbcTemplate.queryForObject("SELECT nextval('sunrise_sunset_seq')", Long.class);
+            if (value != null && value >= BLOCK_SIZE) {
+                return value;
+            }
+        }
+    }
+}
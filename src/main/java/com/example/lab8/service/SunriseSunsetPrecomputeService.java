@@ -0,0 +1,399 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SecondLevelCache;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.PrecomputeStatus;
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.repository.LocationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fills in the sunrise_sunset rows missing for every located Location over a date range, linked
+// through location_sunrise_sunset. Locations sharing coordinates are grouped so each date and
+// position is stored once and linked to all of them, and rows already stored for a position are
+// linked rather than inserted again. Groups are split across a fork/join pool; each leaf task
+// computes its slice with SolarCalculator and writes it in one transaction with JDBC batches,
+// so memory is bounded by the slice size rather than the range or the number of locations.
+// With precompute.storage=series each group instead gets one SunriseSunsetSeries per calendar
+// year the range touches, always covering the whole year.
+@Service
+public class SunriseSunsetPrecomputeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SunriseSunsetPrecomputeService.class);
+
+    private static final int MAX_DAYS = 3660;
+
+    private static final String INSERT_SUNRISE_SUNSET =
+            "INSERT INTO sunrise_sunset (id, date, latitude, longitude, sunrise, sunset, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LINK =
+            "INSERT INTO location_sunrise_sunset (location_id, sunrise_sunset_id) VALUES (?, ?)";
+    // New links change the location as seen through its sunriseSunsets collection.
+    private static final String TOUCH_LOCATION = "UPDATE location SET updated_at = ? WHERE id = ?";
+    private static final String EXISTING_DATES =
+            "SELECT ls.location_id, ss.date FROM location_sunrise_sunset ls "
+                    + "JOIN sunrise_sunset ss ON ss.id = ls.sunrise_sunset_id "
+                    + "WHERE ls.location_id IN (:ids) AND ss.date BETWEEN :from AND :to";
+    // Over-selects the cross product of the coordinates; exact pairs are matched in memory.
+    private static final String EXISTING_ROWS =
+            "SELECT id, latitude, longitude, date FROM sunrise_sunset "
+                    + "WHERE date BETWEEN :from AND :to AND latitude IN (:latitudes) AND longitude IN (:longitudes)";
+
+    private final LocationRepository locationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SunriseSunsetIds sunriseSunsetIds;
+    private final TransactionTemplate transactionTemplate;
+    private final SunriseSunsetCacheHolder sunriseSunsetCache;
+    private final LocationCacheHolder locationCache;
+    private final SunriseSunsetSnapshot snapshot;
+    private final SecondLevelCache secondLevelCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SunriseSunsetSeriesService seriesService;
+    private final boolean seriesStorage;
+    private final ForkJoinPool pool;
+    private final int locationsPerTask;
+    private final int batchSize;
+    private final int daysAhead;
+
+    private final AtomicReference<Job> current = new AtomicReference<>();
+    private volatile PrecomputeStatus lastStatus = PrecomputeStatus.idle();
+
+    public SunriseSunsetPrecomputeService(LocationRepository locationRepository,
+                                          JdbcTemplate jdbcTemplate,
+                                          NamedParameterJdbcTemplate namedJdbcTemplate,
+                                          SunriseSunsetIds sunriseSunsetIds,
+                                          TransactionTemplate transactionTemplate,
+                                          SunriseSunsetCacheHolder sunriseSunsetCache,
+                                          LocationCacheHolder locationCache,
+                                          SunriseSunsetSnapshot snapshot,
+                                          SecondLevelCache secondLevelCache,
+                                          ApplicationEventPublisher eventPublisher,
+                                          SunriseSunsetSeriesService seriesService,
+                                          @Value("${precompute.storage:rows}") String storage,
+                                          @Value("${precompute.parallelism:4}") int parallelism,
+                                          @Value("${precompute.locations-per-task:32}") int locationsPerTask,
+                                          @Value("${precompute.batch-size:500}") int batchSize,
+                                          @Value("${precompute.days-ahead:365}") int daysAhead) {
+        this.locationRepository = locationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.sunriseSunsetIds = sunriseSunsetIds;
+        this.transactionTemplate = transactionTemplate;
+        this.sunriseSunsetCache = sunriseSunsetCache;
+        this.locationCache = locationCache;
+        this.snapshot = snapshot;
+        this.secondLevelCache = secondLevelCache;
+        this.eventPublisher = eventPublisher;
+        this.seriesService = seriesService;
+        if (!"rows".equals(storage) && !"series".equals(storage)) {
+            throw new IllegalArgumentException("precompute.storage must be rows or series, not " + storage);
+        }
+        this.seriesStorage = "series".equals(storage);
+        this.pool = new ForkJoinPool(parallelism);
+        this.locationsPerTask = locationsPerTask;
+        this.batchSize = batchSize;
+        this.daysAhead = daysAhead;
+    }
+
+    // Starts a run in the background; only one run may be active at a time.
+    public PrecomputeStatus start(LocalDate from, LocalDate to) {
+        RequestCounter.increment("precompute.start");
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new BadRequestException("Both from and to are required and from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new BadRequestException("The range must not exceed " + MAX_DAYS + " days");
+        }
+        Job job = new Job(from, to);
+        if (!current.compareAndSet(null, job)) {
+            throw new BadRequestException("A precomputation is already running");
+        }
+        pool.execute(() -> run(job));
+        return job.status("RUNNING", null);
+    }
+
+    @Scheduled(cron = "${precompute.cron:0 0 3 * * *}", zone = "UTC")
+    public void scheduledRun() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        try {
+            start(today, today.plusDays(daysAhead - 1L));
+        } catch (BadRequestException e) {
+            logger.info("Scheduled precomputation skipped: {}", e.getMessage());
+        }
+    }
+
+    public PrecomputeStatus getStatus() {
+        Job job = current.get();
+        return job != null ? job.status("RUNNING", null) : lastStatus;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void run(Job job) {
+        String error = null;
+        try {
+            List<Object[]> coordinates = locationRepository.findCoordinates();
+            Map<String, List<Object[]>> byPosition = new LinkedHashMap<>();
+            for (Object[] row : coordinates) {
+                byPosition.computeIfAbsent(positionKey((Double) row[1], (Double) row[2]),
+                        key -> new ArrayList<>()).add(row);
+            }
+            int count = byPosition.size();
+            long[][] ids = new long[count][];
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            int i = 0;
+            for (List<Object[]> group : byPosition.values()) {
+                ids[i] = group.stream().mapToLong(row -> (Long) row[0]).toArray();
+                latitudes[i] = (Double) group.get(0)[1];
+                longitudes[i] = (Double) group.get(0)[2];
+                i++;
+            }
+            job.totalLocations = coordinates.size();
+            pool.invoke(new Slice(job, ids, latitudes, longitudes, 0, count));
+            logger.info("Precomputed {} sunrise/sunset rows and {} series for {} locations from {} to {}",
+                    job.insertedRows.sum(), job.storedSeries.sum(), coordinates.size(), job.from, job.to);
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            logger.error("Precomputation from {} to {} failed", job.from, job.to, e);
+        } finally {
+            if (job.insertedLinks.sum() > 0) {
+                sunriseSunsetCache.clear();
+                locationCache.clear();
+                // The links were written over JDBC, so Hibernate's cached collections are stale.
+                secondLevelCache.evictAll();
+                snapshot.invalidate();
+                eventPublisher.publishEvent(ChangeEvent.resync());
+            }
+            lastStatus = job.status(error == null ? "COMPLETED" : "FAILED", error);
+            current.set(null);
+        }
+    }
+
+    private void processSlice(Job job, long[][] ids, double[] latitudes, double[] longitudes, int from, int to) {
+        if (seriesStorage) {
+            storeSeries(job, latitudes, longitudes, from, to);
+        } else {
+            insertRows(job, ids, latitudes, longitudes, from, to);
+        }
+        int locations = 0;
+        for (int i = from; i < to; i++) {
+            locations += ids[i].length;
+        }
+        job.processedLocations.addAndGet(locations);
+    }
+
+    private void insertRows(Job job, long[][] ids, double[] latitudes, double[] longitudes, int from, int to) {
+        int days = (int) ChronoUnit.DAYS.between(job.from, job.to) + 1;
+        Set<String> linked = existingDates(job, ids, from, to);
+        Map<String, Long> stored = existingRows(job, latitudes, longitudes, from, to);
+        double[] sunrise = new double[days];
+        double[] sunset = new double[days];
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> links = new ArrayList<>();
+        List<Integer> linkRows = new ArrayList<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = from; i < to; i++) {
+                SolarCalculator.calculate(latitudes[i], longitudes[i], job.from, days, sunrise, sunset);
+                for (int day = 0; day < days; day++) {
+                    LocalDate date = job.from.plusDays(day);
+                    Long rowId = stored.get(positionKey(latitudes[i], longitudes[i]) + "|" + date);
+                    int row = -1;
+                    for (long locationId : ids[i]) {
+                        if (linked.contains(locationId + "|" + date)) {
+                            continue;
+                        }
+                        if (rowId == null && row < 0) {
+                            row = rows.size();
+                            rows.add(new Object[]{null, date, latitudes[i], longitudes[i],
+                                    SolarCalculator.format(sunrise[day]), SolarCalculator.format(sunset[day]), null});
+                        }
+                        links.add(new Object[]{locationId, rowId});
+                        linkRows.add(row);
+                    }
+                    if (links.size() >= batchSize) {
+                        flush(job, rows, links, linkRows);
+                    }
+                }
+            }
+            flush(job, rows, links, linkRows);
+        });
+    }
+
+    private void storeSeries(Job job, double[] latitudes, double[] longitudes, int from, int to) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = from; i < to; i++) {
+                for (int year = job.from.getYear(); year <= job.to.getYear(); year++) {
+                    seriesService.store(latitudes[i], longitudes[i], year);
+                    job.storedSeries.increment();
+                }
+            }
+        });
+    }
+
+    private Set<String> existingDates(Job job, long[][] ids, int from, int to) {
+        List<Long> slice = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            for (long id : ids[i]) {
+                slice.add(id);
+            }
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", slice)
+                .addValue("from", job.from)
+                .addValue("to", job.to);
+        Set<String> existing = new HashSet<>();
+        namedJdbcTemplate.query(EXISTING_DATES, params, rs -> {
+            existing.add(rs.getLong(1) + "|" + rs.getObject(2, LocalDate.class));
+        });
+        return existing;
+    }
+
+    private Map<String, Long> existingRows(Job job, double[] latitudes, double[] longitudes, int from, int to) {
+        Set<String> positions = new HashSet<>();
+        Set<Double> sliceLatitudes = new HashSet<>();
+        Set<Double> sliceLongitudes = new HashSet<>();
+        for (int i = from; i < to; i++) {
+            positions.add(positionKey(latitudes[i], longitudes[i]));
+            sliceLatitudes.add(latitudes[i]);
+            sliceLongitudes.add(longitudes[i]);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("latitudes", sliceLatitudes)
+                .addValue("longitudes", sliceLongitudes)
+                .addValue("from", job.from)
+                .addValue("to", job.to);
+        Map<String, Long> existing = new HashMap<>();
+        namedJdbcTemplate.query(EXISTING_ROWS, params, rs -> {
+            String position = positionKey(rs.getDouble(2), rs.getDouble(3));
+            if (positions.contains(position)) {
+                existing.put(position + "|" + rs.getObject(4, LocalDate.class), rs.getLong(1));
+            }
+        });
+        return existing;
+    }
+
+    // Links with a row index point at a row inserted in this flush and take its id once reserved.
+    private void flush(Job job, List<Object[]> rows, List<Object[]> links, List<Integer> linkRows) {
+        if (links.isEmpty()) {
+            return;
+        }
+        long[] reserved = sunriseSunsetIds.reserve(rows.size());
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i)[0] = reserved[i];
+            rows.get(i)[6] = now;
+        }
+        Set<Object> locationIds = new LinkedHashSet<>();
+        for (int i = 0; i < links.size(); i++) {
+            if (linkRows.get(i) >= 0) {
+                links.get(i)[1] = reserved[linkRows.get(i)];
+            }
+            locationIds.add(links.get(i)[0]);
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SUNRISE_SUNSET, rows);
+        }
+        jdbcTemplate.batchUpdate(INSERT_LINK, links);
+        jdbcTemplate.batchUpdate(TOUCH_LOCATION, locationIds.stream().map(id -> new Object[]{now, id}).toList());
+        job.insertedRows.add(rows.size());
+        job.insertedLinks.add(links.size());
+        rows.clear();
+        links.clear();
+        linkRows.clear();
+    }
+
+    private static String positionKey(double latitude, double longitude) {
+        return latitude + "," + longitude;
+    }
+
+    private static final class Job {
+
+        private final LocalDate from;
+        private final LocalDate to;
+        private final Instant startedAt = Instant.now();
+        private final AtomicInteger processedLocations = new AtomicInteger();
+        private final LongAdder insertedRows = new LongAdder();
+        private final LongAdder insertedLinks = new LongAdder();
+        private final LongAdder storedSeries = new LongAdder();
+        private volatile int totalLocations;
+
+        Job(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        PrecomputeStatus status(String state, String error) {
+            Instant finishedAt = "RUNNING".equals(state) ? null : Instant.now();
+            return new PrecomputeStatus(state, from, to, totalLocations, processedLocations.get(),
+                    insertedRows.sum(), storedSeries.sum(), startedAt, finishedAt, error);
+        }
+    }
+
+    private final class Slice extends RecursiveAction {
+
+        private final Job job;
+        private final long[][] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final int from;
+        private final int to;
+
+        Slice(Job job, long[][] ids, double[] latitudes, double[] longitudes, int from, int to) {
+            this.job = job;
+            this.ids = ids;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= locationsPerTask) {
+                if (to > from) {
+                    processSlice(job, ids, latitudes, longitudes, from, to);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Slice(job, ids, latitudes, longitudes, from, middle),
+                    new Slice(job, ids, latitudes, longitudes, middle, to));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.lab8.service;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.Year;
+
+// Binary form of one coordinate's sunrise and sunset times over a calendar year:
+//   version (1 byte) | year (2 bytes) | days (2 bytes) | per day: sunrise delta, sunset delta
+// Each time is its UTC minute of day plus one, 0 meaning the sun does not rise or set that day,
+// stored as the zigzag varint difference from the previous day's value of the same event. Times
+// move a minute or two a day, so a year takes about 750 bytes. The pairs are interleaved so one
+// day is decoded by reading only the days before it.
+public final class SunriseSunsetSeriesCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final int NO_EVENT = -1;
+
+    private static final int HEADER_BYTES = 5;
+    private static final int MINUTES_PER_DAY = 1440;
+
+    private SunriseSunsetSeriesCodec() {
+    }
+
+    public record Day(int sunrise, int sunset) {
+    }
+
+    // SolarCalculator minutes as a minute of day, wrapped like SolarCalculator.format.
+    public static int minuteOfDay(double minutes) {
+        return Double.isNaN(minutes) ? NO_EVENT : (int) Math.floorMod(Math.round(minutes), (long) MINUTES_PER_DAY);
+    }
+
+    // sunrise[i] and sunset[i] are the minutes of day of January 1 + i, or NO_EVENT.
+    public static byte[] encode(int year, int[] sunrise, int[] sunset) {
+        int days = Year.of(year).length();
+        if (sunrise.length != days || sunset.length != days) {
+            throw new IllegalArgumentException(year + " needs " + days + " sunrise and sunset values");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_BYTES + 2 * days);
+        out.write(FORMAT_VERSION);
+        out.write(year >>> 8);
+        out.write(year);
+        out.write(days >>> 8);
+        out.write(days);
+        int previousSunrise = 0;
+        int previousSunset = 0;
+        for (int day = 0; day < days; day++) {
+            int sunriseValue = value(sunrise[day]);
+            int sunsetValue = value(sunset[day]);
+            writeVarint(out, sunriseValue - previousSunrise);
+            writeVarint(out, sunsetValue - previousSunset);
+            previousSunrise = sunriseValue;
+            previousSunset = sunsetValue;
+        }
+        return out.toByteArray();
+    }
+
+    public static int year(byte[] data) {
+        checkHeader(data);
+        return (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+    }
+
+    public static Day day(byte[] data, LocalDate date) {
+        if (date.getYear() != year(data)) {
+            throw new IllegalArgumentException("The series covers " + year(data) + ", not " + date);
+        }
+        int[] position = {HEADER_BYTES};
+        int sunrise = 0;
+        int sunset = 0;
+        for (int day = 0; day < date.getDayOfYear(); day++) {
+            sunrise += readVarint(data, position);
+            sunset += readVarint(data, position);
+        }
+        return new Day(sunrise - 1, sunset - 1);
+    }
+
+    // Every day of the series, in order.
+    public static Day[] decode(byte[] data) {
+        checkHeader(data);
+        int days = (data[3] & 0xFF) << 8 | data[4] & 0xFF;
+        Day[] result = new Day[days];
+        int[] position = {HEADER_BYTES};
+        int sunrise = 0;
+        int sunset = 0;
+        for (int day = 0; day < days; day++) {
+            sunrise += readVarint(data, position);
+            sunset += readVarint(data, position);
+            result[day] = new Day(sunrise - 1, sunset - 1);
+        }
+        return result;
+    }
+
+    public static String format(int minuteOfDay) {
+        return minuteOfDay == NO_EVENT ? null : SolarCalculator.format(minuteOfDay);
+    }
+
+    private static int value(int minuteOfDay) {
+        if (minuteOfDay < NO_EVENT || minuteOfDay >= MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Not a minute of day: " + minuteOfDay);
+        }
+        return minuteOfDay + 1;
+    }
+
+    private static void checkHeader(byte[] data) {
+        if (data.length < HEADER_BYTES || data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a version " + FORMAT_VERSION + " sunrise/sunset series");
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            out.write(zigzag & 0x7F | 0x80);
+            zigzag >>>= 7;
+        }
+        out.write(zigzag);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int zigzag = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated sunrise/sunset series");
+            }
+            byte b = data[position[0]++];
+            zigzag |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed sunrise/sunset series");
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.dto.LocationSummary;
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.exception.ResourceNotFoundException;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.model.SunriseSunsetSeries;
+import com.example.lab8.repository.LocationRepository;
+import com.example.lab8.repository.SunriseSunsetSeriesRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Yearly sunrise/sunset series: one compact blob per coordinate and year instead of a row per
+// day. The precompute job stores them in series storage mode; a request for a year that is not
+// stored is encoded on the fly and not kept, so reads never write. The /by-date reads decode the
+// requested day from every stored series of its year, kept in memory per year, for coordinates
+// and locations that have no stored row that day.
+@Service
+public class SunriseSunsetSeriesService {
+
+    private static final int MAX_CACHED_YEARS = 16;
+
+    private final SunriseSunsetSeriesRepository repository;
+    private final LocationRepository locationRepository;
+    private final LocationCacheHolder locationCache;
+    // Series data by year, then by "latitude,longitude".
+    private final Cache<Integer, Map<String, byte[]>> byYear;
+
+    public SunriseSunsetSeriesService(SunriseSunsetSeriesRepository repository,
+                                      LocationRepository locationRepository,
+                                      LocationCacheHolder locationCache,
+                                      @Value("${cache.sunrise-sunset.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.repository = repository;
+        this.locationRepository = locationRepository;
+        this.locationCache = locationCache;
+        this.byYear = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_YEARS)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    // The stored series, or an unsaved one (without id) computed for the request.
+    @Transactional(readOnly = true)
+    public SunriseSunsetSeries getSeries(Long locationId, int year) {
+        RequestCounter.increment("sunriseSunsetSeries.get");
+        checkYear(year);
+        Location location = locationRepository.findById(locationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Location with id " + locationId + " not found"));
+        if (location.getLatitude() == null || location.getLongitude() == null) {
+            throw new BadRequestException("Location " + locationId + " has no coordinates");
+        }
+        return repository.findByLatitudeAndLongitudeAndYear(location.getLatitude(), location.getLongitude(), year)
+                .orElseGet(() -> new SunriseSunsetSeries(location.getLatitude(), location.getLongitude(), year,
+                        encode(location.getLatitude(), location.getLongitude(), year)));
+    }
+
+    // Computes the year with SolarCalculator and inserts or replaces its series.
+    @Transactional
+    public SunriseSunsetSeries store(double latitude, double longitude, int year) {
+        checkYear(year);
+        byte[] data = encode(latitude, longitude, year);
+        SunriseSunsetSeries series = repository.findByLatitudeAndLongitudeAndYear(latitude, longitude, year)
+                .orElseGet(() -> new SunriseSunsetSeries(latitude, longitude, year, data));
+        series.setData(data);
+        SunriseSunsetSeries saved = repository.save(series);
+        // Registered first, so by-date entries reloaded on invalidation decode the new series.
+        afterCommit(() -> byYear.invalidate(year));
+        locationCache.invalidateTags(List.of(LocationCacheHolder.seriesYearTag(year)));
+        return saved;
+    }
+
+    private static byte[] encode(double latitude, double longitude, int year) {
+        int days = Year.of(year).length();
+        double[] sunrise = new double[days];
+        double[] sunset = new double[days];
+        SolarCalculator.calculate(latitude, longitude, LocalDate.of(year, 1, 1), days, sunrise, sunset);
+        int[] sunriseMinutes = new int[days];
+        int[] sunsetMinutes = new int[days];
+        for (int day = 0; day < days; day++) {
+            sunriseMinutes[day] = SunriseSunsetSeriesCodec.minuteOfDay(sunrise[day]);
+            sunsetMinutes[day] = SunriseSunsetSeriesCodec.minuteOfDay(sunset[day]);
+        }
+        return SunriseSunsetSeriesCodec.encode(year, sunriseMinutes, sunsetMinutes);
+    }
+
+    public boolean hasSeries(int year) {
+        return !seriesOf(year).isEmpty();
+    }
+
+    // The date's times from every stored series, one record per coordinate, without ids.
+    public List<SunriseSunset> decodeDay(LocalDate date) {
+        Map<String, byte[]> series = seriesOf(date.getYear());
+        List<SunriseSunset> result = new ArrayList<>(series.size());
+        series.forEach((position, data) -> {
+            int comma = position.indexOf(',');
+            result.add(toSunriseSunset(date, Double.parseDouble(position.substring(0, comma)),
+                    Double.parseDouble(position.substring(comma + 1)), data));
+        });
+        return result;
+    }
+
+    // Locations at a coordinate with a series for the date's year but no linked row that date,
+    // as detached copies carrying just the decoded day.
+    @Transactional(readOnly = true)
+    public List<Location> decodeLocations(LocalDate date) {
+        Map<String, byte[]> series = seriesOf(date.getYear());
+        if (series.isEmpty()) {
+            return List.of();
+        }
+        List<Location> result = new ArrayList<>();
+        for (LocationSummary summary : locationRepository.findSummariesWithSeriesAndNoRowOn(date.getYear(), date)) {
+            byte[] data = series.get(positionKey(summary.latitude(), summary.longitude()));
+            if (data == null) {
+                continue;
+            }
+            Location location = new Location(summary.name(), summary.country(), summary.latitude(),
+                    summary.longitude());
+            location.setId(summary.id());
+            location.getSunriseSunsets().add(toSunriseSunset(date, summary.latitude(), summary.longitude(), data));
+            result.add(location);
+        }
+        return result;
+    }
+
+    private Map<String, byte[]> seriesOf(int year) {
+        return byYear.get(year, key -> {
+            Map<String, byte[]> series = new LinkedHashMap<>();
+            for (SunriseSunsetSeries stored : repository.findByYear(key)) {
+                series.put(positionKey(stored.getLatitude(), stored.getLongitude()), stored.getData());
+            }
+            return series;
+        });
+    }
+
+    private static SunriseSunset toSunriseSunset(LocalDate date, double latitude, double longitude, byte[] data) {
+        SunriseSunsetSeriesCodec.Day day = SunriseSunsetSeriesCodec.day(data, date);
+        return new SunriseSunset(date, latitude, longitude, SunriseSunsetSeriesCodec.format(day.sunrise()),
+                SunriseSunsetSeriesCodec.format(day.sunset()));
+    }
+
+    private static void checkYear(int year) {
+        if (year < 1 || year > 9999) {
+            throw new BadRequestException("year must be within [1, 9999]");
+        }
+    }
+
+    private static String positionKey(double latitude, double longitude) {
+        return latitude + "," + longitude;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
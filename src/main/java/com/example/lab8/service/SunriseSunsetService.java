@@ -1,58 +1,299 @@
 package com.example.lab8.service;
 
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.DaylightReport;
+import com.example.lab8.dto.DaylightStats;
+import com.example.lab8.dto.KeysetPage;
+import com.example.lab8.dto.SolarTimes;
+import com.example.lab8.exception.BadRequestException;
 import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.LocationRepository;
 import com.example.lab8.repository.SunriseSunsetRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class SunriseSunsetService {
 
     private static final Logger logger = LoggerFactory.getLogger(SunriseSunsetService.class);
 
+    private static final String ALL_KEY = "all_sunrise_sunsets";
+    private static final String DATE_KEY_PREFIX = "sunrise_sunsets_date_";
+    // Over JDBC rather than a native query, which would make Hibernate evict every L2 region. The id
+    // is freshly reserved, so the only conflict left is uk_sunrise_sunset_date_lat_lon; no conflict
+    // target is named because H2's PostgreSQL mode only accepts the bare form.
+    private static final String INSERT_IF_ABSENT =
+            "INSERT INTO sunrise_sunset (id, date, latitude, longitude, sunrise, sunset, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
     @Autowired
     private SunriseSunsetRepository repository;
 
+    @Autowired
+    private SunriseSunsetCacheHolder sunriseSunsetCache;
+
+    @Autowired
+    private LocationCacheHolder locationCache;
+
+    @Autowired
+    private SunriseSunsetSnapshot snapshot;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SunriseSunsetSeriesService seriesService;
+
+    @Autowired
+    private SunriseSunsetIds sunriseSunsetIds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${pagination.default-page-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${pagination.max-page-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${sunrise-sunset.latitude:0}")
+    private double defaultLatitude;
+
+    @Value("${sunrise-sunset.longitude:0}")
+    private double defaultLongitude;
+
     @Transactional(readOnly = true)
     public List<SunriseSunset> getAll() {
-        RequestCounter.increment();
-        return repository.findAll();
+        RequestCounter.increment("sunriseSunset.getAll");
+        return sunriseSunsetCache.getOrLoad(ALL_KEY, () -> {
+            logger.debug("Cache miss, querying database for all sunrise/sunset records");
+            return repository.findAll();
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<SunriseSunset> getPage(String cursor, Integer size) {
+        RequestCounter.increment("sunriseSunset.getPage");
+        int pageSize = KeysetPage.resolveSize(size, defaultPageSize, maxPageSize);
+        long afterId = KeysetPage.decodeCursor(cursor);
+        List<SunriseSunset> sunriseSunsets = sunriseSunsetCache.getOrLoad(
+                "sunrise_sunsets_page_" + afterId + "_" + pageSize, () -> {
+                    logger.debug("Cache miss, querying database for {} sunrise/sunset records after ID: {}",
+                            pageSize, afterId);
+                    return repository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(pageSize));
+                }, page -> page.size() < pageSize ? List.of(SunriseSunsetCacheHolder.MEMBERSHIP_TAG) : List.of());
+        return KeysetPage.of(sunriseSunsets, pageSize, SunriseSunset::getId);
     }
 
+    // Upsert on the natural key: a record for a date and coordinates already stored overwrites
+    // that row's times instead of adding a second row, and an identical one writes nothing.
+    // A new key is claimed with ON CONFLICT DO NOTHING, so of two concurrent creates for it one
+    // inserts and the other, after waiting for that commit, overwrites the row instead of failing.
     @Transactional
     public SunriseSunset create(SunriseSunset sunriseSunset) {
-        RequestCounter.increment();
-        SunriseSunset saved = repository.save(sunriseSunset);
-        return saved;
+        RequestCounter.increment("sunriseSunset.create");
+        if (!hasNaturalKey(sunriseSunset)) {
+            SunriseSunset saved = repository.save(sunriseSunset);
+            created(List.of(saved));
+            return saved;
+        }
+        Optional<SunriseSunset> existing = findByNaturalKey(sunriseSunset);
+        if (existing.isEmpty()) {
+            if (insertIfAbsent(sunriseSunset)) {
+                created(List.of(sunriseSunset));
+                return sunriseSunset;
+            }
+            existing = findByNaturalKey(sunriseSunset);
+        }
+        SunriseSunset stored = existing.orElseThrow(() -> new IllegalStateException(
+                "Sunrise/sunset key of " + sunriseSunset + " conflicted but is not stored"));
+        if (Objects.equals(stored.getSunrise(), sunriseSunset.getSunrise())
+                && Objects.equals(stored.getSunset(), sunriseSunset.getSunset())) {
+            return stored;
+        }
+        return overwrite(stored, sunriseSunset);
+    }
+
+    private Optional<SunriseSunset> findByNaturalKey(SunriseSunset sunriseSunset) {
+        return repository.findByDateAndLatitudeAndLongitude(sunriseSunset.getDate(),
+                sunriseSunset.getLatitude(), sunriseSunset.getLongitude());
+    }
+
+    // Leaves the record without an id when another transaction already stored its key.
+    private boolean insertIfAbsent(SunriseSunset sunriseSunset) {
+        sunriseSunset.setId(sunriseSunsetIds.reserve(1)[0]);
+        sunriseSunset.touch();
+        int inserted = jdbcTemplate.update(INSERT_IF_ABSENT, sunriseSunset.getId(), sunriseSunset.getDate(),
+                sunriseSunset.getLatitude(), sunriseSunset.getLongitude(), sunriseSunset.getSunrise(),
+                sunriseSunset.getSunset(), OffsetDateTime.ofInstant(sunriseSunset.getUpdatedAt(), ZoneOffset.UTC));
+        if (inserted == 0) {
+            sunriseSunset.setId(null);
+            return false;
+        }
+        return true;
+    }
+
+    // Rows missing part of the key are not covered by the unique index and are never merged.
+    public static boolean hasNaturalKey(SunriseSunset sunriseSunset) {
+        return sunriseSunset.getDate() != null && sunriseSunset.getLatitude() != null
+                && sunriseSunset.getLongitude() != null;
+    }
+
+    // Bookkeeping for rows inserted in the current transaction, by create or by a write-behind batch.
+    public void created(List<SunriseSunset> sunriseSunsets) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(ALL_KEY);
+        for (SunriseSunset saved : sunriseSunsets) {
+            snapshot.upsert(saved);
+            eventPublisher.publishEvent(ChangeEvent.upsert(saved));
+            keys.add(dateKey(saved.getDate()));
+        }
+        sunriseSunsetCache.invalidate(keys.toArray(String[]::new));
+        sunriseSunsetCache.invalidateMembership();
     }
 
     @Transactional
     public SunriseSunset update(Long id, SunriseSunset sunriseSunset) {
-        RequestCounter.increment();
+        RequestCounter.increment("sunriseSunset.update");
         SunriseSunset existing = repository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("SunriseSunset with id " + id + " not found"));
+        return overwrite(existing, sunriseSunset);
+    }
+
+    private SunriseSunset overwrite(SunriseSunset existing, SunriseSunset sunriseSunset) {
+        LocalDate oldDate = existing.getDate();
         existing.setDate(sunriseSunset.getDate());
         existing.setLatitude(sunriseSunset.getLatitude());
         existing.setLongitude(sunriseSunset.getLongitude());
         existing.setSunrise(sunriseSunset.getSunrise());
         existing.setSunset(sunriseSunset.getSunset());
-        return repository.save(existing);
+        SunriseSunset saved = repository.save(existing);
+        snapshot.upsert(saved);
+        eventPublisher.publishEvent(ChangeEvent.upsert(saved));
+        sunriseSunsetCache.invalidate(ALL_KEY, dateKey(oldDate), dateKey(saved.getDate()));
+        sunriseSunsetCache.invalidateSunriseSunset(saved.getId());
+        locationCache.invalidateDates(Arrays.asList(oldDate, saved.getDate()));
+        return saved;
     }
 
     @Transactional
     public void delete(Long id) {
-        RequestCounter.increment();
-        repository.deleteById(id);
+        RequestCounter.increment("sunriseSunset.delete");
+        repository.findById(id).ifPresent(existing -> {
+            repository.delete(existing);
+            snapshot.remove(id);
+            eventPublisher.publishEvent(ChangeEvent.deleted(ChangeEvent.SUNRISE_SUNSET, id));
+            sunriseSunsetCache.invalidate(ALL_KEY, dateKey(existing.getDate()));
+            sunriseSunsetCache.invalidateSunriseSunset(id);
+            locationCache.invalidateDates(Collections.singletonList(existing.getDate()));
+        });
     }
 
+    // Stored rows plus the day decoded from yearly series at coordinates without a row that date.
+    // Decoded records carry no id and are merged in after the cache, which holds stored rows only.
     @Transactional(readOnly = true)
-    public List<SunriseSunset> getByDate(String date) {
-        RequestCounter.increment();
-        return repository.findByDate(date);
+    public List<SunriseSunset> getByDate(LocalDate date) {
+        RequestCounter.increment("sunriseSunset.getByDate");
+        List<SunriseSunset> stored = sunriseSunsetCache.getOrLoad(dateKey(date), () -> {
+            logger.debug("Cache miss, querying database for sunrise/sunset records by date: {}", date);
+            return repository.findByDate(date);
+        });
+        List<SunriseSunset> decoded = seriesService.decodeDay(date);
+        if (decoded.isEmpty()) {
+            return stored;
+        }
+        Set<String> storedPositions = new HashSet<>();
+        stored.forEach(row -> storedPositions.add(row.getLatitude() + "," + row.getLongitude()));
+        List<SunriseSunset> merged = new ArrayList<>(stored);
+        for (SunriseSunset row : decoded) {
+            if (!storedPositions.contains(row.getLatitude() + "," + row.getLongitude())) {
+                merged.add(row);
+            }
+        }
+        return merged;
+    }
+
+    // Computed in-process, so neither the cache nor the database is involved.
+    public SolarTimes calculate(Double latitude, Double longitude, LocalDate date) {
+        RequestCounter.increment("sunriseSunset.calculate");
+        double lat = latitude != null ? latitude : defaultLatitude;
+        double lon = longitude != null ? longitude : defaultLongitude;
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new BadRequestException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+        LocalDate day = date != null ? date : LocalDate.now(ZoneOffset.UTC);
+        double sunrise = SolarCalculator.sunrise(lat, lon, day);
+        double sunset = SolarCalculator.sunset(lat, lon, day);
+        Double dayLength = Double.isNaN(sunrise) || Double.isNaN(sunset) ? null : sunset - sunrise;
+        return new SolarTimes(day, lat, lon, SolarCalculator.format(sunrise), SolarCalculator.format(sunset),
+                dayLength);
+    }
+
+    // Served from the columnar snapshot; only the location ids are read from the database.
+    public DaylightReport getDaylightStatistics(LocalDate from, LocalDate to) {
+        RequestCounter.increment("sunriseSunset.getDaylightStatistics");
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        SunriseSunsetSnapshot.DaylightColumns columns = snapshot.daylight(from, to);
+        Map<String, List<Long>> locationIds = new HashMap<>();
+        for (Object[] row : locationRepository.findCoordinates()) {
+            locationIds.computeIfAbsent(coordinateKey(((Double) row[1]).floatValue(), ((Double) row[2]).floatValue()),
+                    key -> new ArrayList<>()).add((Long) row[0]);
+        }
+        List<DaylightStats> stats = new ArrayList<>();
+        for (int g = 0; g < columns.days().length; g++) {
+            if (columns.days()[g] == 0) {
+                continue;
+            }
+            float latitude = columns.latitudes()[g];
+            float longitude = columns.longitudes()[g];
+            // Widen through the decimal form so 53.9f is reported as 53.9, not 53.900001525878906.
+            stats.add(new DaylightStats(Double.parseDouble(Float.toString(latitude)),
+                    Double.parseDouble(Float.toString(longitude)),
+                    locationIds.getOrDefault(coordinateKey(latitude, longitude), List.of()),
+                    columns.days()[g], columns.minMinutes()[g], columns.maxMinutes()[g],
+                    (double) columns.totalMinutes()[g] / columns.days()[g], columns.totalMinutes()[g]));
+        }
+        return new DaylightReport(from, to, columns.rows(), stats);
+    }
+
+    public Map<String, Object> getCacheStatistics() {
+        return sunriseSunsetCache.getStatistics();
+    }
+
+    private static String coordinateKey(float latitude, float longitude) {
+        return latitude + "," + longitude;
+    }
+
+    private static String dateKey(LocalDate date) {
+        return DATE_KEY_PREFIX + date;
     }
-}
\ No newline at end of file
+}
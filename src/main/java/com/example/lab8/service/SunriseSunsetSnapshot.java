@@ -0,0 +1,467 @@
+package com.example.lab8.service;
+
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.SunriseSunsetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Column-oriented copy of sunrise_sunset for analytics: one primitive array per attribute instead
+// of one object per row. Coordinates are dictionary-encoded into groups, times are minutes of the
+// day (-1 when missing). Committed writes queue row changes that the next reader folds into a new
+// snapshot in memory, and only invalidate() forces a database reload. invalidate() bumps a
+// generation rather than clearing the snapshot, so a load that was already running when it
+// landed is discarded instead of being published as current.
+@Component
+public class SunriseSunsetSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(SunriseSunsetSnapshot.class);
+
+    private static final int SCAN_CHUNK = 1 << 16;
+
+    private final SunriseSunsetRepository repository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Published published;
+
+    public SunriseSunsetSnapshot(SunriseSunsetRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Per coordinate group; arrays are indexed by group and hold -1/0 where a group had no rows.
+    public record DaylightColumns(float[] latitudes, float[] longitudes, int[] days, int[] minMinutes,
+                                  int[] maxMinutes, long[] totalMinutes, int rows) {
+    }
+
+    public void upsert(SunriseSunset sunriseSunset) {
+        Change change = new Change(sunriseSunset.getId(), toRow(sunriseSunset));
+        afterCommit(() -> pending.add(change));
+    }
+
+    public void remove(Long id) {
+        afterCommit(() -> pending.add(new Change(id, null)));
+    }
+
+    public void invalidate() {
+        afterCommit(generation::incrementAndGet);
+    }
+
+    public int size() {
+        return current().live;
+    }
+
+    // Day length statistics over rows dated within [from, to], scanned in parallel chunks. Each
+    // chunk fills its own accumulator arrays, so the per-row loop does not allocate.
+    public DaylightColumns daylight(LocalDate from, LocalDate to) {
+        Columns snapshot = current();
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int chunks = (snapshot.size + SCAN_CHUNK - 1) / SCAN_CHUNK;
+        Accumulator total = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scan(snapshot, chunk * SCAN_CHUNK,
+                        Math.min(snapshot.size, (chunk + 1) * SCAN_CHUNK), fromDay, toDay))
+                .reduce(Accumulator::merge)
+                .orElseGet(() -> new Accumulator(snapshot.groupCount));
+        return new DaylightColumns(Arrays.copyOf(snapshot.groupLatitudes, snapshot.groupCount),
+                Arrays.copyOf(snapshot.groupLongitudes, snapshot.groupCount),
+                total.days, total.min, total.max, total.sum, total.rows);
+    }
+
+    private static Accumulator scan(Columns c, int from, int to, int fromDay, int toDay) {
+        Accumulator acc = new Accumulator(c.groupCount);
+        for (int i = from; i < to; i++) {
+            // Dead rows hold Columns.DEAD, below any fromDay.
+            int day = c.epochDays[i];
+            if (day < fromDay || day > toDay || c.sunrise[i] < 0 || c.sunset[i] < 0) {
+                continue;
+            }
+            int length = c.sunset[i] - c.sunrise[i];
+            if (length < 0) {
+                // Sunset after midnight UTC, east or west of the date line.
+                length += 1440;
+            }
+            int group = c.groups[i];
+            if (acc.days[group] == 0 || length < acc.min[group]) {
+                acc.min[group] = length;
+            }
+            if (length > acc.max[group]) {
+                acc.max[group] = length;
+            }
+            acc.days[group]++;
+            acc.sum[group] += length;
+            acc.rows++;
+        }
+        return acc;
+    }
+
+    private Columns current() {
+        Published snapshot = published;
+        if (snapshot != null && snapshot.generation() == generation.get() && pending.isEmpty()) {
+            return snapshot.columns();
+        }
+        lock.lock();
+        try {
+            snapshot = published;
+            while (snapshot == null || snapshot.generation() != generation.get()) {
+                long loading = generation.get();
+                pending.clear();
+                Columns loaded = load();
+                if (generation.get() != loading) {
+                    logger.debug("Sunrise/sunset snapshot invalidated while loading, loading again");
+                    continue;
+                }
+                snapshot = new Published(loaded, loading);
+                published = snapshot;
+            }
+            if (!pending.isEmpty()) {
+                snapshot = new Published(snapshot.columns().apply(drain()), snapshot.generation());
+                published = snapshot;
+            }
+            return snapshot.columns();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<Long, Row> drain() {
+        Map<Long, Row> changes = new HashMap<>();
+        Change change;
+        while ((change = pending.poll()) != null) {
+            changes.put(change.id(), change.row());
+        }
+        return changes;
+    }
+
+    private Columns load() {
+        long start = System.nanoTime();
+        Columns loaded = readOnlyTransaction.execute(status -> {
+            Columns.Builder builder = new Columns.Builder((int) Math.min(Integer.MAX_VALUE - 8, repository.count()));
+            try (Stream<Object[]> rows = repository.streamColumns()) {
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    Object[] row = iterator.next();
+                    builder.add((Long) row[0], toRow((LocalDate) row[1], (Double) row[2], (Double) row[3],
+                            (String) row[4], (String) row[5]));
+                }
+            }
+            Columns built = builder.build();
+            return built.fragmented() ? built.compact() : built;
+        });
+        logger.info("Sunrise/sunset snapshot loaded with {} rows in {} ms", loaded.size,
+                (System.nanoTime() - start) / 1_000_000);
+        return loaded;
+    }
+
+    private static Row toRow(SunriseSunset sunriseSunset) {
+        return toRow(sunriseSunset.getDate(), sunriseSunset.getLatitude(), sunriseSunset.getLongitude(),
+                sunriseSunset.getSunrise(), sunriseSunset.getSunset());
+    }
+
+    // Rows without a date or coordinates cannot take part in any analytics query.
+    private static Row toRow(LocalDate date, Double latitude, Double longitude, String sunrise, String sunset) {
+        if (date == null || latitude == null || longitude == null) {
+            return null;
+        }
+        return new Row((int) date.toEpochDay(), latitude.floatValue(), longitude.floatValue(),
+                minuteOfDay(sunrise), minuteOfDay(sunset));
+    }
+
+    static short minuteOfDay(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            return -1;
+        }
+        int hours = digit(time, 0) * 10 + digit(time, 1);
+        int minutes = digit(time, 3) * 10 + digit(time, 4);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return -1;
+        }
+        return (short) (hours * 60 + minutes);
+    }
+
+    private static int digit(String text, int index) {
+        char c = text.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -100;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Row(int epochDay, float latitude, float longitude, short sunrise, short sunset) {
+    }
+
+    private record Published(Columns columns, long generation) {
+    }
+
+    // A null row removes the id.
+    private record Change(Long id, Row row) {
+    }
+
+    private static final class Accumulator {
+
+        private final int[] days;
+        private final int[] min;
+        private final int[] max;
+        private final long[] sum;
+        private int rows;
+
+        Accumulator(int groups) {
+            days = new int[groups];
+            min = new int[groups];
+            max = new int[groups];
+            sum = new long[groups];
+            Arrays.fill(min, -1);
+            Arrays.fill(max, -1);
+        }
+
+        Accumulator merge(Accumulator other) {
+            for (int g = 0; g < days.length; g++) {
+                if (other.days[g] == 0) {
+                    continue;
+                }
+                if (days[g] == 0 || other.min[g] < min[g]) {
+                    min[g] = other.min[g];
+                }
+                max[g] = Math.max(max[g], other.max[g]);
+                days[g] += other.days[g];
+                sum[g] += other.sum[g];
+            }
+            rows += other.rows;
+            return this;
+        }
+    }
+
+
+    // A version of the columns. Rows keep their position for the life of the arrays: a change
+    // marks the row's old position dead and appends its new version past the end, into spare
+    // capacity no earlier version reads, so folding in a batch costs O(changes * log n) instead of
+    // a copy of the table. Positions [0, sortedEnd) are in id order and binary searched, later
+    // ones are scanned; once unsorted and dead rows pass an eighth of the table, compact() copies
+    // the live rows back into id order. Arrays and groupIndex are only written under the lock.
+    private static final class Columns {
+
+        private static final int DEAD = Integer.MIN_VALUE;
+        private static final int MIN_FRAGMENTATION = 1024;
+
+        private final int size;
+        private final int live;
+        private final int sortedEnd;
+        private final long[] ids;
+        private final int[] epochDays;
+        private final short[] sunrise;
+        private final short[] sunset;
+        private final int[] groups;
+        private final int groupCount;
+        private final float[] groupLatitudes;
+        private final float[] groupLongitudes;
+        private final Map<Long, Integer> groupIndex;
+
+        private Columns(Builder builder) {
+            this.size = builder.size;
+            this.live = builder.live;
+            this.sortedEnd = builder.sortedEnd;
+            this.ids = builder.ids;
+            this.epochDays = builder.epochDays;
+            this.sunrise = builder.sunrise;
+            this.sunset = builder.sunset;
+            this.groups = builder.groups;
+            this.groupCount = builder.groupCount;
+            this.groupLatitudes = builder.groupLatitudes;
+            this.groupLongitudes = builder.groupLongitudes;
+            this.groupIndex = builder.groupIndex;
+        }
+
+        // Removes the changed ids and appends their new rows; no database access.
+        Columns apply(Map<Long, Row> changes) {
+            Builder builder = new Builder(this);
+            changes.keySet().forEach(builder::kill);
+            changes.forEach(builder::add);
+            Columns next = builder.build();
+            return next.fragmented() ? next.compact() : next;
+        }
+
+        private boolean fragmented() {
+            return (size - sortedEnd) + (size - live) > Math.max(MIN_FRAGMENTATION, size >> 3);
+        }
+
+        // Live rows in id order: the sorted prefix merged with the sorted rest.
+        private Columns compact() {
+            Integer[] rest = IntStream.range(sortedEnd, size)
+                    .filter(i -> epochDays[i] != DEAD)
+                    .boxed()
+                    .sorted(Comparator.comparingLong(i -> ids[i]))
+                    .toArray(Integer[]::new);
+            Builder builder = new Builder(live, this);
+            int i = 0;
+            int r = 0;
+            while (i < sortedEnd || r < rest.length) {
+                if (i < sortedEnd && epochDays[i] == DEAD) {
+                    i++;
+                    continue;
+                }
+                int position = r == rest.length || (i < sortedEnd && ids[i] < ids[rest[r]]) ? i++ : rest[r++];
+                builder.append(ids[position], epochDays[position], sunrise[position], sunset[position],
+                        groups[position]);
+            }
+            return builder.build();
+        }
+
+        private static final class Builder {
+
+            private final Map<Long, Integer> groupIndex;
+            private int size;
+            private int live;
+            private int sortedEnd;
+            private long[] ids;
+            private int[] epochDays;
+            private short[] sunrise;
+            private short[] sunset;
+            private int[] groups;
+            private int groupCount;
+            private float[] groupLatitudes;
+            private float[] groupLongitudes;
+
+            Builder(int capacity) {
+                allocate(capacity);
+                groupIndex = new HashMap<>();
+                groupLatitudes = new float[16];
+                groupLongitudes = new float[16];
+            }
+
+            // Fresh row arrays, sharing the groups of an existing version.
+            Builder(int capacity, Columns groupsOf) {
+                allocate(capacity);
+                groupIndex = groupsOf.groupIndex;
+                groupCount = groupsOf.groupCount;
+                groupLatitudes = groupsOf.groupLatitudes;
+                groupLongitudes = groupsOf.groupLongitudes;
+            }
+
+            // Continues an existing version in place.
+            Builder(Columns from) {
+                groupIndex = from.groupIndex;
+                size = from.size;
+                live = from.live;
+                sortedEnd = from.sortedEnd;
+                ids = from.ids;
+                epochDays = from.epochDays;
+                sunrise = from.sunrise;
+                sunset = from.sunset;
+                groups = from.groups;
+                groupCount = from.groupCount;
+                groupLatitudes = from.groupLatitudes;
+                groupLongitudes = from.groupLongitudes;
+            }
+
+            private void allocate(int capacity) {
+                int initial = Math.max(16, capacity);
+                ids = new long[initial];
+                epochDays = new int[initial];
+                sunrise = new short[initial];
+                sunset = new short[initial];
+                groups = new int[initial];
+            }
+
+            static long key(float latitude, float longitude) {
+                return ((long) Float.floatToIntBits(latitude) << 32) | (Float.floatToIntBits(longitude) & 0xffffffffL);
+            }
+
+            // Readers of the previous version may already skip the row; the write has committed.
+            void kill(long id) {
+                int position = find(id);
+                if (position >= 0) {
+                    epochDays[position] = DEAD;
+                    live--;
+                }
+            }
+
+            private int find(long id) {
+                int position = Arrays.binarySearch(ids, 0, sortedEnd, id);
+                if (position >= 0 && epochDays[position] != DEAD) {
+                    return position;
+                }
+                for (int i = sortedEnd; i < size; i++) {
+                    if (ids[i] == id && epochDays[i] != DEAD) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            void add(long id, Row row) {
+                if (row == null) {
+                    return;
+                }
+                Integer group = groupIndex.get(key(row.latitude(), row.longitude()));
+                if (group == null) {
+                    if (groupCount == groupLatitudes.length) {
+                        groupLatitudes = Arrays.copyOf(groupLatitudes, groupCount * 2);
+                        groupLongitudes = Arrays.copyOf(groupLongitudes, groupCount * 2);
+                    }
+                    group = groupCount++;
+                    groupLatitudes[group] = row.latitude();
+                    groupLongitudes[group] = row.longitude();
+                    groupIndex.put(key(row.latitude(), row.longitude()), group);
+                }
+                append(id, row.epochDay(), row.sunrise(), row.sunset(), group);
+            }
+
+            void append(long id, int epochDay, short rise, short set, int group) {
+                if (size == ids.length) {
+                    int capacity = size + (size >> 1);
+                    ids = Arrays.copyOf(ids, capacity);
+                    epochDays = Arrays.copyOf(epochDays, capacity);
+                    sunrise = Arrays.copyOf(sunrise, capacity);
+                    sunset = Arrays.copyOf(sunset, capacity);
+                    groups = Arrays.copyOf(groups, capacity);
+                }
+                if (sortedEnd == size && (size == 0 || id > ids[size - 1])) {
+                    sortedEnd++;
+                }
+                ids[size] = id;
+                epochDays[size] = epochDay;
+                sunrise[size] = rise;
+                sunset[size] = set;
+                groups[size] = group;
+                size++;
+                live++;
+            }
+
+            Columns build() {
+                return new Columns(this);
+            }
+        }
+    }
+}
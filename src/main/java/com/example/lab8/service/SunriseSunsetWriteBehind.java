@@ -0,0 +1,335 @@
+package com.example.lab8.service;
+
+import com.example.lab8.exception.ServiceUnavailableException;
+import com.example.lab8.model.SunriseSunset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// Optional write-behind path for sunrise/sunset creates. Records wait in a bounded queue and one
+// flusher thread inserts them over JDBC, a batch per transaction, once batch-size records are
+// waiting or max-delay after the oldest arrived, so feeders posting one record at a time share
+// statements and commits. Records are upserted on their natural key: within a batch the last
+// record for a date and position wins, keys already stored go through the service's upsert, and
+// only new keys are batch-inserted with ids from the sequence blocks. Ids are therefore known
+// only once the batch is written, not in a queued acknowledgement. A full queue blocks the caller
+// for up to offer-timeout and then answers 503; shutdown stops intake and flushes what is queued.
+@Service
+public class SunriseSunsetWriteBehind implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(SunriseSunsetWriteBehind.class);
+
+    private static final String INSERT_SUNRISE_SUNSET =
+            "INSERT INTO sunrise_sunset (id, date, latitude, longitude, sunrise, sunset, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // Over-selects the cross product of the keys; exact keys are matched in memory.
+    private static final String EXISTING_KEYS =
+            "SELECT date, latitude, longitude FROM sunrise_sunset "
+                    + "WHERE date IN (:dates) AND latitude IN (:latitudes) AND longitude IN (:longitudes)";
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SunriseSunsetIds sunriseSunsetIds;
+    private final SunriseSunsetService sunriseSunsetService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration maxDelay;
+    private final Duration offerTimeout;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<Pending> queue;
+    private final Thread flusher;
+
+    // Submitters hold the read lock while offering, so once shutdown holds the write lock and
+    // closes intake, no record can slip into the queue behind the final flush.
+    private final ReadWriteLock intake = new ReentrantReadWriteLock();
+    private volatile boolean accepting;
+    // Set as soon as stop() begins, before it waits for submits already holding the intake lock.
+    private volatile boolean stopping;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writtenRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SunriseSunsetWriteBehind(JdbcTemplate jdbcTemplate,
+                                    NamedParameterJdbcTemplate namedJdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    SunriseSunsetIds sunriseSunsetIds,
+                                    SunriseSunsetService sunriseSunsetService,
+                                    @Value("${write-behind.enabled:false}") boolean enabled,
+                                    @Value("${write-behind.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${write-behind.batch-size:500}") int batchSize,
+                                    @Value("${write-behind.max-delay:200ms}") Duration maxDelay,
+                                    @Value("${write-behind.offer-timeout:1s}") Duration offerTimeout,
+                                    @Value("${write-behind.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sunriseSunsetIds = sunriseSunsetIds;
+        this.sunriseSunsetService = sunriseSunsetService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "sunrise-sunset-write-behind");
+        this.flusher.setDaemon(true);
+    }
+
+    @Override
+    public void start() {
+        if (enabled && !flusher.isAlive()) {
+            accepting = true;
+            flusher.start();
+        }
+    }
+
+    // Runs after the web server has stopped taking requests and before any bean is destroyed,
+    // so the final batches still reach the caches and change listeners. New submits are refused
+    // from the start; the write lock then waits out submits that were already queueing.
+    @Override
+    public void stop() {
+        stopping = true;
+        if (!flusher.isAlive()) {
+            return;
+        }
+        intake.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            intake.writeLock().unlock();
+        }
+        try {
+            flusher.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            logger.warn("Sunrise/sunset write-behind did not drain within {}; {} records left unwritten",
+                    shutdownTimeout, queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return accepting;
+    }
+
+    // Lifecycles stop in descending phase order. The servlet web server stops at
+    // SMART_LIFECYCLE_PHASE - 1024, so this phase sits one step below it rather than sharing it.
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // With durable set the call returns the committed row; otherwise, once queued, a copy of the
+    // record without an id, since the queued instance is still to be written by the flusher.
+    public SunriseSunset create(SunriseSunset sunriseSunset, boolean durable) {
+        CompletableFuture<SunriseSunset> written = submit(sunriseSunset);
+        if (!durable) {
+            return new SunriseSunset(sunriseSunset.getDate(), sunriseSunset.getLatitude(),
+                    sunriseSunset.getLongitude(), sunriseSunset.getSunrise(), sunriseSunset.getSunset());
+        }
+        try {
+            return written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<SunriseSunset> submit(SunriseSunset sunriseSunset) {
+        RequestCounter.increment("sunriseSunset.createQueued");
+        if (stopping) {
+            throw new ServiceUnavailableException("Sunrise/sunset write-behind is not accepting records");
+        }
+        intake.readLock().lock();
+        try {
+            if (!accepting) {
+                throw new ServiceUnavailableException("Sunrise/sunset write-behind is not accepting records");
+            }
+            sunriseSunset.setId(null);
+            Pending pending = new Pending(sunriseSunset, new CompletableFuture<>(), System.nanoTime());
+            if (!queue.offer(pending, offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new ServiceUnavailableException("Sunrise/sunset write queue is full, retry later");
+            }
+            return pending.written();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the sunrise/sunset write queue");
+        } finally {
+            intake.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("queued", queue.size());
+        result.put("remainingCapacity", queue.remainingCapacity());
+        result.put("batches", batches.sum());
+        result.put("writtenRows", writtenRows.sum());
+        result.put("failedRows", failedRows.sum());
+        result.put("rejected", rejected.sum());
+        return result;
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                Pending oldest = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (oldest == null) {
+                    continue;
+                }
+                batch.add(oldest);
+                long deadline = oldest.queuedAt() + maxDelay.toNanos();
+                // Waits in short slices, so a shutdown does not sit out the rest of max-delay.
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0 || !accepting) {
+                        break;
+                    }
+                    Pending next = queue.poll(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS)),
+                            TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // Only shutdown stops the loop, and only once the queue is empty.
+                write(batch);
+            } catch (RuntimeException e) {
+                logger.error("Sunrise/sunset write-behind flush failed", e);
+                batch.forEach(pending -> pending.written().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // A failing batch is retried row by row, so one bad record only fails its own caller.
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            insert(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() > 1) {
+                logger.warn("Batch of {} sunrise/sunset records failed, retrying one by one: {}",
+                        batch.size(), e.getMessage());
+                batch.forEach(pending -> write(List.of(pending)));
+                return;
+            }
+            failedRows.increment();
+            logger.error("Sunrise/sunset record {} could not be written", batch.get(0).sunriseSunset(), e);
+            batch.get(0).written().completeExceptionally(e);
+        }
+    }
+
+    private void insert(List<Pending> batch) {
+        // The last record queued for a key wins; every caller for the key gets the stored row.
+        Map<Object, List<Pending>> byKey = new LinkedHashMap<>();
+        Map<Object, SunriseSunset> latest = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            SunriseSunset row = pending.sunriseSunset();
+            Object key = SunriseSunsetService.hasNaturalKey(row) ? naturalKey(row) : pending;
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(pending);
+            latest.put(key, row);
+        }
+        Map<Object, SunriseSunset> saved = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<List<Object>> stored = existingKeys(latest.values());
+            List<SunriseSunset> rows = new ArrayList<>();
+            latest.forEach((key, row) -> {
+                if (stored.contains(key)) {
+                    saved.put(key, sunriseSunsetService.create(row));
+                } else {
+                    rows.add(row);
+                    saved.put(key, row);
+                }
+            });
+            long[] ids = sunriseSunsetIds.reserve(rows.size());
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                SunriseSunset row = rows.get(i);
+                row.setId(ids[i]);
+                row.touch();
+                OffsetDateTime updatedAt = OffsetDateTime.ofInstant(row.getUpdatedAt(), ZoneOffset.UTC);
+                args.add(new Object[]{row.getId(), row.getDate(), row.getLatitude(), row.getLongitude(),
+                        row.getSunrise(), row.getSunset(), updatedAt});
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SUNRISE_SUNSET, args);
+                sunriseSunsetService.created(rows);
+            }
+        });
+        batches.increment();
+        writtenRows.add(saved.size());
+        byKey.forEach((key, pendings) -> pendings.forEach(pending -> pending.written().complete(saved.get(key))));
+    }
+
+    private Set<List<Object>> existingKeys(Collection<SunriseSunset> rows) {
+        List<SunriseSunset> keyed = rows.stream().filter(SunriseSunsetService::hasNaturalKey).toList();
+        Set<List<Object>> existing = new HashSet<>();
+        if (keyed.isEmpty()) {
+            return existing;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("dates", keyed.stream().map(SunriseSunset::getDate).collect(Collectors.toSet()))
+                .addValue("latitudes", keyed.stream().map(SunriseSunset::getLatitude).collect(Collectors.toSet()))
+                .addValue("longitudes", keyed.stream().map(SunriseSunset::getLongitude).collect(Collectors.toSet()));
+        namedJdbcTemplate.query(EXISTING_KEYS, params, rs -> {
+            existing.add(List.of(rs.getObject(1, LocalDate.class), rs.getDouble(2), rs.getDouble(3)));
+        });
+        return existing;
+    }
+
+    private static List<Object> naturalKey(SunriseSunset sunriseSunset) {
+        return List.of(sunriseSunset.getDate(), sunriseSunset.getLatitude(), sunriseSunset.getLongitude());
+    }
+
+    private record Pending(SunriseSunset sunriseSunset, CompletableFuture<SunriseSunset> written, long queuedAt) {
+    }
+}
@@ -11,8 +11,40 @@ const App = () => {
 
     useEffect(() => {
         fetchSunriseSunsets();
+        return subscribeToChanges();
     }, []);
 
+    // Applies server-side changes in place instead of re-downloading the whole list.
+    // Every (re)connect refetches once, since changes made while disconnected are not replayed.
+    const subscribeToChanges = () => {
+        const source = new EventSource('http://localhost:8080/api/changes');
+        let connectedBefore = false;
+        source.onopen = () => {
+            if (connectedBefore) {
+                fetchSunriseSunsets();
+            }
+            connectedBefore = true;
+        };
+        source.addEventListener('sunriseSunset', (event) => {
+            const change = JSON.parse(event.data);
+            setSunriseSunsets((current) => {
+                const others = current.filter((item) => item.id !== change.id);
+                if (change.type === 'DELETE') {
+                    return others;
+                }
+                const index = current.findIndex((item) => item.id === change.id);
+                if (index === -1) {
+                    return [...others, change.data];
+                }
+                const updated = [...current];
+                updated[index] = change.data;
+                return updated;
+            });
+        });
+        source.addEventListener('all', () => fetchSunriseSunsets());
+        return () => source.close();
+    };
+
     const fetchSunriseSunsets = async () => {
         try {
             const response = await axios.get('http://localhost:8080/api/sunrise-sunset');
@@ -36,7 +68,6 @@ const App = () => {
             } else {
                 await axios.post('http://localhost:8080/api/sunrise-sunset', formData);
             }
-            fetchSunriseSunsets();
             resetForm();
         } catch (err) {
             setError('Не удалось сохранить запись');
@@ -59,7 +90,6 @@ const App = () => {
     const handleDelete = async (id) => {
         try {
             await axios.delete(`http://localhost:8080/api/sunrise-sunset/${id}`);
-            fetchSunriseSunsets();
         } catch (err) {
             setError('Не удалось удалить запись');
             console.error('Ошибка при удалении записи:', err);
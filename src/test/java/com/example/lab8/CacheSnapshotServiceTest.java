@@ -0,0 +1,164 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.CacheSnapshotFile;
+import com.example.lab8.config.EntityCacheHolder;
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheSnapshotServiceTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    private final LocationCacheHolder locationCache = new LocationCacheHolder(100, Duration.ofMinutes(5));
+    private final SunriseSunsetCacheHolder sunriseSunsetCache = new SunriseSunsetCacheHolder(100, Duration.ofMinutes(5));
+
+    private CacheSnapshotService service;
+    private SunriseSunset first;
+    private SunriseSunset second;
+    private Location minsk;
+    private Location brest;
+
+    @BeforeEach
+    void setUp() {
+        service = new CacheSnapshotService(namedJdbcTemplate, locationCache, sunriseSunsetCache, true,
+                directory.resolve("cache.bin"), Duration.ofMinutes(1));
+        first = sunriseSunset(10L, "2025-04-04");
+        second = sunriseSunset(11L, "2025-04-05");
+        minsk = location(1L, "Minsk", first);
+        brest = location(2L, "Brest", second);
+    }
+
+    @Test
+    void testSnapshotRoundTripKeepsEntriesTagsAndSharedRows() throws Exception {
+        locationCache.put("all_locations", List.of(minsk, brest), EntityCacheHolder.MEMBERSHIP_TAG);
+        locationCache.put("location_1", List.of(minsk), LocationCacheHolder.locationTag(1L));
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-04", List.of(first));
+
+        service.write();
+        CacheSnapshotFile.Snapshot snapshot = CacheSnapshotFile.read(directory.resolve("cache.bin"));
+
+        assertTrue(snapshot.watermark().isBefore(Instant.now().minus(Duration.ofSeconds(59))));
+        assertEquals(2, snapshot.locations().size());
+        EntityCacheHolder.Entry<Location> all = entry(snapshot.locations(), "all_locations");
+        EntityCacheHolder.Entry<Location> byId = entry(snapshot.locations(), "location_1");
+        assertTrue(all.tags().contains(EntityCacheHolder.MEMBERSHIP_TAG));
+        assertEquals("Brest", all.values().get(1).getName());
+        assertEquals(LocalDate.parse("2025-04-05"), all.values().get(1).getSunriseSunsets().get(0).getDate());
+        assertSame(all.values().get(0), byId.values().get(0), "rows are stored once");
+        assertSame(byId.values().get(0).getSunriseSunsets().get(0),
+                entry(snapshot.sunriseSunsets(), "sunrise_sunsets_date_2025-04-04").values().get(0));
+    }
+
+    @Test
+    void testRestoreDropsEntriesTouchedAfterWatermark() throws Exception {
+        Location moved = location(3L, "Grodno", first);
+        CacheSnapshotFile.Snapshot snapshot = new CacheSnapshotFile.Snapshot(Instant.now(), List.of(
+                new EntityCacheHolder.Entry<>("location_1", List.of(minsk),
+                        Set.of(LocationCacheHolder.locationTag(1L), LocationCacheHolder.dateTag(first.getDate()))),
+                new EntityCacheHolder.Entry<>("location_2", List.of(brest),
+                        Set.of(LocationCacheHolder.locationTag(2L))),
+                new EntityCacheHolder.Entry<>("location_3", List.of(moved),
+                        Set.of(LocationCacheHolder.locationTag(3L))),
+                new EntityCacheHolder.Entry<>("all_locations", List.of(minsk),
+                        Set.of(EntityCacheHolder.MEMBERSHIP_TAG)),
+                new EntityCacheHolder.Entry<>("locations_date_2025-04-06", List.of(),
+                        Set.of(LocationCacheHolder.dateTag(LocalDate.parse("2025-04-06"))))
+        ), List.of(
+                new EntityCacheHolder.Entry<>("sunrise_sunsets_date_2025-04-04", List.of(first), Set.of()),
+                new EntityCacheHolder.Entry<>("sunrise_sunsets_date_2025-04-05", List.of(second), Set.of())
+        ));
+        // Location 2 was rewritten, location 3 deleted, row 11 deleted, and a location added with a 04-06 link.
+        when(namedJdbcTemplate.queryForList(contains("FROM location WHERE id IN"), any(MapSqlParameterSource.class),
+                eq(Long.class))).thenReturn(List.of(1L));
+        when(namedJdbcTemplate.queryForList(contains("FROM sunrise_sunset WHERE id IN"),
+                any(MapSqlParameterSource.class), eq(Long.class))).thenReturn(List.of(10L));
+        when(namedJdbcTemplate.queryForList(contains("FROM location WHERE updated_at"),
+                any(MapSqlParameterSource.class), eq(Long.class))).thenReturn(List.of(2L, 4L));
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getObject(1, LocalDate.class)).thenReturn(LocalDate.parse("2025-04-06"));
+        doAnswer(invocation -> {
+            invocation.getArgument(2, RowCallbackHandler.class).processRow(resultSet);
+            return null;
+        }).when(namedJdbcTemplate).query(contains("UNION"), any(MapSqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        when(namedJdbcTemplate.queryForObject(contains("COUNT"), any(MapSqlParameterSource.class), eq(Long.class)))
+                .thenReturn(0L);
+
+        int restored = service.restore(snapshot);
+
+        assertEquals(2, restored);
+        assertEquals(List.of(minsk), locationCache.get("location_1"));
+        assertNull(locationCache.get("location_2"));
+        assertNull(locationCache.get("location_3"));
+        assertNull(locationCache.get("all_locations"));
+        assertNull(locationCache.get("locations_date_2025-04-06"));
+        assertEquals(List.of(first), sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-05"));
+
+        // Restored entries keep their dependencies, so later writes still invalidate them.
+        locationCache.invalidateDates(List.of(first.getDate()));
+        assertNull(locationCache.get("location_1"));
+    }
+
+    @Test
+    void testWrittenSunriseSunsetRowDiscardsWholeSunriseSunsetCache() throws Exception {
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-04", List.of(first));
+        service.write();
+        sunriseSunsetCache.clear();
+        when(namedJdbcTemplate.queryForList(contains("FROM sunrise_sunset WHERE id IN"),
+                any(MapSqlParameterSource.class), eq(Long.class))).thenReturn(List.of(10L));
+        when(namedJdbcTemplate.queryForList(contains("FROM location WHERE updated_at"),
+                any(MapSqlParameterSource.class), eq(Long.class))).thenReturn(List.of());
+        when(namedJdbcTemplate.queryForObject(contains("COUNT"), any(MapSqlParameterSource.class), eq(Long.class)))
+                .thenReturn(1L);
+
+        service.run(null);
+
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+    }
+
+    private static <T> EntityCacheHolder.Entry<T> entry(List<EntityCacheHolder.Entry<T>> entries, String key) {
+        return entries.stream().filter(entry -> entry.key().equals(key)).findFirst().orElseThrow();
+    }
+
+    private static SunriseSunset sunriseSunset(long id, String date) {
+        SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse(date), 53.9, 27.6, "06:41", "19:52");
+        sunriseSunset.setId(id);
+        return sunriseSunset;
+    }
+
+    private static Location location(long id, String name, SunriseSunset sunriseSunset) {
+        Location location = new Location(name, "Belarus", 53.9, 27.6);
+        location.setId(id);
+        location.getSunriseSunsets().add(sunriseSunset);
+        return location;
+    }
+}
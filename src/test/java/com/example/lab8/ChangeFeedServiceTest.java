@@ -0,0 +1,128 @@
+package com.example.lab8.service;
+
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.model.SunriseSunset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedServiceTest {
+
+    private final ChangeFeedService changeFeedService = new ChangeFeedService(10, 3, Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        changeFeedService.shutdown();
+    }
+
+    @Test
+    void testChangesToTheSameRowAreCoalescedWhileTheSubscriberIsBusy() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        changeFeedService.register(emitter);
+
+        changeFeedService.onChange(ChangeEvent.upsert(sunriseSunset(1L, "06:41")));
+        assertTrue(emitter.firstSendStarted.await(5, TimeUnit.SECONDS));
+        changeFeedService.onChange(ChangeEvent.upsert(sunriseSunset(2L, "06:40")));
+        changeFeedService.onChange(ChangeEvent.upsert(sunriseSunset(2L, "06:39")));
+        changeFeedService.onChange(ChangeEvent.deleted(ChangeEvent.SUNRISE_SUNSET, 3L));
+        emitter.releaseFirstSend.countDown();
+
+        List<Object> sent = emitter.awaitEvents(3);
+        assertEquals(3, sent.size());
+        assertEquals("06:39", ((SunriseSunset) ((ChangeEvent) sent.get(1)).data()).getSunrise());
+        assertEquals(ChangeEvent.DELETE, ((ChangeEvent) sent.get(2)).type());
+    }
+
+    @Test
+    void testBacklogBeyondTheLimitCollapsesIntoResync() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        changeFeedService.register(emitter);
+
+        changeFeedService.onChange(ChangeEvent.upsert(sunriseSunset(1L, "06:41")));
+        assertTrue(emitter.firstSendStarted.await(5, TimeUnit.SECONDS));
+        // 2..5 overflow the limit of 3 and collapse; 6 and 7 queue behind the resync.
+        for (long id = 2; id <= 7; id++) {
+            changeFeedService.onChange(ChangeEvent.upsert(sunriseSunset(id, "06:41")));
+        }
+        emitter.releaseFirstSend.countDown();
+
+        List<Object> sent = emitter.awaitEvents(4);
+        assertEquals(ChangeEvent.resync(), sent.get(1));
+        assertEquals(6L, ((ChangeEvent) sent.get(2)).id());
+        assertEquals(7L, ((ChangeEvent) sent.get(3)).id());
+        Thread.sleep(100);
+        assertEquals(4, emitter.events.size());
+    }
+
+    @Test
+    void testFailedSendUnsubscribes() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.fail = true;
+        changeFeedService.register(emitter);
+        assertEquals(1, changeFeedService.getSubscriberCount());
+
+        changeFeedService.onChange(ChangeEvent.deleted(ChangeEvent.LOCATION, 1L));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (changeFeedService.getSubscriberCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, changeFeedService.getSubscriberCount());
+    }
+
+    private static SunriseSunset sunriseSunset(Long id, String sunrise) {
+        SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, sunrise, "19:52");
+        sunriseSunset.setId(id);
+        return sunriseSunset;
+    }
+
+    // Records the data of each event; the first send blocks until released, like a slow client.
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Object> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseFirstSend = new CountDownLatch(1);
+        private volatile boolean fail;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (part.getData() instanceof ChangeEvent) {
+                    events.add(part.getData());
+                }
+            }
+            if (events.size() == 1 && firstSendStarted.getCount() > 0) {
+                firstSendStarted.countDown();
+                try {
+                    releaseFirstSend.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        List<Object> awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return List.copyOf(events);
+        }
+    }
+}
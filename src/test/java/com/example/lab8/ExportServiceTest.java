@@ -0,0 +1,176 @@
+package com.example.lab8.service;
+
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.LocationRepository;
+import com.example.lab8.repository.SunriseSunsetRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock
+    private SunriseSunsetRepository sunriseSunsetRepository;
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportService(sunriseSunsetRepository, locationRepository, entityManager, objectMapper);
+    }
+
+    @Test
+    void testExportLocationsGroupsConsecutiveRowsIntoOneLinePerLocation() throws IOException {
+        when(locationRepository.streamAllWithSunriseSunsetIds()).thenReturn(Stream.of(
+                row(1L, "Minsk", "Belarus", 53.9, 27.6, 10L),
+                row(1L, "Minsk", "Belarus", 53.9, 27.6, 11L),
+                row(2L, "Brest", "Belarus", 52.1, 23.7, null),
+                row(3L, "Grodno", "Belarus", 53.7, 23.8, 12L),
+                row(3L, "Grodno", "Belarus", 53.7, 23.8, 13L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(3, exportService.exportLocations(out));
+
+        assertEquals("""
+                {"id":1,"name":"Minsk","country":"Belarus","latitude":53.9,"longitude":27.6,"sunriseSunsetIds":[10,11]}
+                {"id":2,"name":"Brest","country":"Belarus","latitude":52.1,"longitude":23.7,"sunriseSunsetIds":[]}
+                {"id":3,"name":"Grodno","country":"Belarus","latitude":53.7,"longitude":23.8,"sunriseSunsetIds":[12,13]}
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportLocationsFlushesALastGroupOfOneRow() throws IOException {
+        when(locationRepository.streamAllWithSunriseSunsetIds()).thenReturn(Stream.of(
+                row(1L, "Minsk", "Belarus", 53.9, 27.6, 10L),
+                row(2L, "Brest", "Belarus", null, null, 14L)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(2, exportService.exportLocations(out));
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("{\"id\":2,\"name\":\"Brest\",\"country\":\"Belarus\",\"latitude\":null,\"longitude\":null,"
+                + "\"sunriseSunsetIds\":[14]}", lines.get(1));
+    }
+
+    @Test
+    void testExportOfAnEmptyStreamWritesNothing() throws IOException {
+        when(locationRepository.streamAllWithSunriseSunsetIds()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, exportService.exportLocations(out));
+
+        assertEquals(0, out.size());
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void testExportSunriseSunsetsWritesOneLinePerRowAndClearsEveryChunk() throws IOException {
+        List<SunriseSunset> rows = new ArrayList<>();
+        IntStream.range(0, 1001).forEach(i -> {
+            SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52");
+            sunriseSunset.setId((long) i);
+            rows.add(sunriseSunset);
+        });
+        when(sunriseSunsetRepository.streamAll()).thenReturn(rows.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(1001, exportService.exportSunriseSunsets(out));
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("}\n"));
+        List<String> lines = ndjson.lines().toList();
+        assertEquals(1001, lines.size());
+        JsonNode last = objectMapper.readTree(lines.get(1000));
+        assertEquals(1000, last.get("id").asLong());
+        assertEquals("2025-04-04", last.get("date").asText());
+        assertEquals("06:41", last.get("sunrise").asText());
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void testCheckRangeAcceptsARangeUpToAYear() {
+        assertDoesNotThrow(() -> ExportService.checkRange(LocalDate.parse("2025-04-04"), LocalDate.parse("2025-04-04")));
+        assertDoesNotThrow(() -> ExportService.checkRange(LocalDate.parse("2024-01-01"), LocalDate.parse("2024-12-31")));
+    }
+
+    @Test
+    void testCheckRangeRejectsFromAfterTo() {
+        assertThrows(BadRequestException.class,
+                () -> ExportService.checkRange(LocalDate.parse("2025-04-05"), LocalDate.parse("2025-04-04")));
+    }
+
+    @Test
+    void testCheckRangeRejectsARangeOverTheLimit() {
+        assertThrows(BadRequestException.class,
+                () -> ExportService.checkRange(LocalDate.parse("2024-01-01"), LocalDate.parse("2025-01-01")));
+    }
+
+    @Test
+    void testExportByDateRangeStreamsTheRowsInTheRange() throws IOException {
+        LocalDate from = LocalDate.parse("2025-04-04");
+        LocalDate to = LocalDate.parse("2025-04-05");
+        SunriseSunset sunriseSunset = new SunriseSunset(from, 53.9, 27.6, "06:41", "19:52");
+        sunriseSunset.setId(10L);
+        when(sunriseSunsetRepository.streamByDateBetween(from, to)).thenReturn(Stream.of(sunriseSunset));
+        when(locationRepository.streamWithSunriseSunsetIdsByDateBetween(from, to)).thenReturn(Stream.<Object[]>of(
+                row(1L, "Minsk", "Belarus", 53.9, 27.6, 10L)));
+        ByteArrayOutputStream sunriseSunsets = new ByteArrayOutputStream();
+        ByteArrayOutputStream locations = new ByteArrayOutputStream();
+
+        assertEquals(1, exportService.exportSunriseSunsetsByDateRange(from, to, sunriseSunsets));
+        assertEquals(1, exportService.exportLocationsByDateRange(from, to, locations));
+
+        assertEquals(10, objectMapper.readTree(sunriseSunsets.toString(StandardCharsets.UTF_8)).get("id").asLong());
+        assertEquals("{\"id\":1,\"name\":\"Minsk\",\"country\":\"Belarus\",\"latitude\":53.9,\"longitude\":27.6,"
+                + "\"sunriseSunsetIds\":[10]}\n", locations.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportByDateRangeOfAnEmptyRangeWritesNothing() throws IOException {
+        LocalDate day = LocalDate.parse("2025-04-04");
+        when(sunriseSunsetRepository.streamByDateBetween(day, day)).thenReturn(Stream.empty());
+        when(locationRepository.streamWithSunriseSunsetIdsByDateBetween(day, day)).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, exportService.exportSunriseSunsetsByDateRange(day, day, out));
+        assertEquals(0, exportService.exportLocationsByDateRange(day, day, out));
+
+        assertEquals(0, out.size());
+    }
+
+    private static Object[] row(Long id, String name, String country, Double latitude, Double longitude,
+                                Long sunriseSunsetId) {
+        return new Object[]{id, name, country, latitude, longitude, sunriseSunsetId};
+    }
+}
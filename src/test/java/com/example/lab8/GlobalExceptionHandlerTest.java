@@ -0,0 +1,44 @@
+package com.example.lab8.exception;
+
+import com.example.lab8.model.SunriseSunset;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @Test
+    void testNaturalKeyViolationNamedByHibernateIsAConflict() {
+        SQLException sql = new SQLException("duplicate key value");
+        DataIntegrityViolationException ex = new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", sql, SunriseSunset.NATURAL_KEY));
+
+        assertEquals(HttpStatus.CONFLICT, handler.handleConflict(ex).getStatusCode());
+    }
+
+    @Test
+    void testNaturalKeyViolationFromJdbcIsAConflict() {
+        DataIntegrityViolationException ex = new DataIntegrityViolationException("batch failed", new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"uk_sunrise_sunset_date_lat_lon\""));
+
+        assertEquals(HttpStatus.CONFLICT, handler.handleConflict(ex).getStatusCode());
+    }
+
+    @Test
+    void testOtherIntegrityViolationsAreServerErrors() {
+        SQLException sql = new SQLException("null value in column \"name\" violates not-null constraint");
+        DataIntegrityViolationException named = new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", sql, "uk_sunrise_sunset_series_lat_lon_year"));
+        DataIntegrityViolationException unnamed = new DataIntegrityViolationException("insert failed", sql);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, handler.handleConflict(named).getStatusCode());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, handler.handleConflict(unnamed).getStatusCode());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.lab8.repository;
+
+import com.example.lab8.config.SecondLevelCacheConfig;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every call runs in its own transaction, so only the second-level cache can save statements.
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import(SecondLevelCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LocationRepositoryCacheTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2025-04-04");
+
+    @Autowired
+    private LocationRepository repository;
+
+    @Autowired
+    private SunriseSunsetRepository sunriseSunsetRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private Long locationId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        locationId = inTransaction(() -> {
+            SunriseSunset sunriseSunset = sunriseSunsetRepository.save(
+                    new SunriseSunset(DATE, 53.9, 27.6, "06:41", "19:52"));
+            Location location = new Location("Minsk", "Belarus", 53.9, 27.6);
+            location.getSunriseSunsets().add(sunriseSunset);
+            return repository.save(location).getId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        inTransaction(() -> {
+            repository.deleteAll();
+            sunriseSunsetRepository.deleteAll();
+            return null;
+        });
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    void testFindByIdIsServedFromSecondLevelCacheOnceWarm() {
+        assertEquals(1, statements(() -> inTransaction(() -> repository.findById(locationId).orElseThrow()
+                .getSunriseSunsets().size())), "cold read");
+
+        assertEquals(0, statements(() -> inTransaction(() -> repository.findById(locationId).orElseThrow()
+                .getSunriseSunsets().size())), "warm read");
+        assertEquals(3, statistics.getSecondLevelCacheHitCount(), "location, collection and sunrise/sunset");
+    }
+
+    // A warm findById skips the entity graph; the service initializes the collection in the read
+    // transaction, which the collection region serves without SQL, so callers never see it lazy.
+    @Test
+    void testWarmFindByIdCollectionIsInitializedInsideTheTransaction() {
+        inTransaction(() -> repository.findById(locationId).orElseThrow().getSunriseSunsets().size());
+
+        Location lazy = inTransaction(() -> repository.findById(locationId).orElseThrow());
+        assertFalse(Hibernate.isInitialized(lazy.getSunriseSunsets()), "the entity graph is not applied");
+
+        Location[] initialized = new Location[1];
+        assertEquals(0, statements(() -> initialized[0] = inTransaction(() -> {
+            Location location = repository.findById(locationId).orElseThrow();
+            Hibernate.initialize(location.getSunriseSunsets());
+            return location;
+        })));
+        assertTrue(Hibernate.isInitialized(initialized[0].getSunriseSunsets()));
+        assertEquals(DATE, initialized[0].getSunriseSunsets().get(0).getDate());
+    }
+
+    @Test
+    void testFindForUpdateSkipsTheSelect() {
+        inTransaction(() -> repository.findById(locationId).orElseThrow().getSunriseSunsets().size());
+
+        long statements = statements(() -> inTransaction(() -> {
+            Location location = repository.findById(locationId).orElseThrow();
+            location.setName("Minsk City");
+            return repository.save(location);
+        }));
+
+        assertEquals(1, statements, "only the UPDATE reaches the database");
+    }
+
+    @Test
+    void testLocationsByDateQueryIsCachedUntilATableChanges() {
+        inTransaction(() -> repository.findLocationsBySunriseSunsetDate(DATE));
+
+        assertEquals(0, statements(() -> inTransaction(() -> repository.findLocationsBySunriseSunsetDate(DATE))));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        inTransaction(() -> {
+            repository.findById(locationId).orElseThrow().setName("Minsk City");
+            return null;
+        });
+        List<Location> locations = inTransaction(() -> repository.findLocationsBySunriseSunsetDate(DATE));
+
+        assertEquals("Minsk City", locations.get(0).getName());
+        assertEquals(1, statistics.getQueryCacheMissCount());
+    }
+
+    private long statements(Supplier<?> action) {
+        statistics.clear();
+        action.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+}
@@ -1,5 +1,11 @@
 package com.example.lab8.service;
 
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.dto.BulkUpsertResult;
+import com.example.lab8.dto.KeysetPage;
+import com.example.lab8.dto.LocationSummary;
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.exception.BadRequestException;
 import com.example.lab8.model.Location;
 import com.example.lab8.model.SunriseSunset;
 import com.example.lab8.repository.LocationRepository;
@@ -9,11 +15,23 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,7 +47,19 @@ class LocationServiceTest {
     private SunriseSunsetRepository sunriseSunsetRepository;
 
     @Mock
-    private Map<String, List<Location>> locationCache;
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private LocationSpatialIndex spatialIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SunriseSunsetSeriesService seriesService;
+
+    @Spy
+    private LocationCacheHolder locationCache = new LocationCacheHolder(100, Duration.ofMinutes(5));
 
     @InjectMocks
     private LocationService locationService;
@@ -46,13 +76,54 @@ class LocationServiceTest {
 
         sunriseSunset = new SunriseSunset();
         sunriseSunset.setId(1L);
-        sunriseSunset.setDate("2025-04-04");
+        sunriseSunset.setDate(LocalDate.parse("2025-04-04"));
+    }
+
+    @Test
+    void testSummaryViewUsesProjectionQueryOnly() {
+        LocationSummary summary = new LocationSummary(1L, "Minsk", "Belarus", 53.9, 27.6);
+        when(locationRepository.findAllSummaries()).thenReturn(List.of(summary));
+
+        List<Object> result = locationService.getAll(LocationView.of("summary", null));
+
+        assertEquals(List.of(summary), result);
+        verify(locationRepository, never()).findAll();
+    }
+
+    @Test
+    void testFieldsRenderOnlyRequestedColumnsInDeclarationOrder() {
+        when(locationRepository.findSummaryById(1L))
+                .thenReturn(Optional.of(new LocationSummary(1L, "Minsk", "Belarus", 53.9, 27.6)));
+
+        Optional<Object> result = locationService.getById(1L, LocationView.of(null, List.of("country", "id")));
+
+        assertEquals(Map.of("id", 1L, "country", "Belarus"), result.orElseThrow());
+        assertEquals(List.of("id", "country"), List.copyOf(((Map<?, ?>) result.get()).keySet()));
+        verify(locationRepository, never()).findById(any());
+    }
+
+    @Test
+    void testFieldsWithSunriseSunsetsUseEntityGraph() {
+        location.getSunriseSunsets().add(sunriseSunset);
+        when(locationRepository.findAll()).thenReturn(List.of(location));
+
+        List<Object> result = locationService.getAll(LocationView.of(null, List.of("name", "sunriseSunsets")));
+
+        assertEquals(List.of(Map.of("name", "Test Location", "sunriseSunsets", List.of(sunriseSunset))), result);
+        verify(locationRepository, never()).findAllSummaries();
+    }
+
+    @Test
+    void testInvalidViewOrFieldIsRejected() {
+        assertThrows(BadRequestException.class, () -> LocationView.of("compact", null));
+        assertThrows(BadRequestException.class, () -> LocationView.of(null, List.of("population")));
+        assertThrows(BadRequestException.class, () -> LocationView.of("summary", List.of("sunriseSunsets")));
+        assertSame(LocationView.FULL, LocationView.of("full", null));
     }
 
     @Test
     void testGetAllWhenCachedReturnsCachedData() {
-        when(locationCache.containsKey("all_locations")).thenReturn(true);
-        when(locationCache.get("all_locations")).thenReturn(List.of(location));
+        locationCache.put("all_locations", List.of(location));
 
         List<Location> result = locationService.getAll();
 
@@ -63,20 +134,18 @@ class LocationServiceTest {
 
     @Test
     void testGetAllWhenNotCachedReturnsDatabaseData() {
-        when(locationCache.containsKey("all_locations")).thenReturn(false);
         when(locationRepository.findAll()).thenReturn(List.of(location));
 
         List<Location> result = locationService.getAll();
 
         assertEquals(1, result.size());
         assertEquals(location, result.get(0));
-        verify(locationCache).put("all_locations", List.of(location));
+        verify(locationCache).put("all_locations", List.of(location), LocationCacheHolder.MEMBERSHIP_TAG);
     }
 
     @Test
     void testGetByIdWhenCachedReturnsCachedData() {
-        when(locationCache.containsKey("location_1")).thenReturn(true);
-        when(locationCache.get("location_1")).thenReturn(List.of(location));
+        locationCache.put("location_1", List.of(location));
 
         Optional<Location> result = locationService.getById(1L);
 
@@ -87,19 +156,17 @@ class LocationServiceTest {
 
     @Test
     void testGetByIdWhenNotCachedReturnsDatabaseData() {
-        when(locationCache.containsKey("location_1")).thenReturn(false);
         when(locationRepository.findById(1L)).thenReturn(Optional.of(location));
 
         Optional<Location> result = locationService.getById(1L);
 
         assertTrue(result.isPresent());
         assertEquals(location, result.get());
-        verify(locationCache).put("location_1", List.of(location));
+        verify(locationCache).put("location_1", List.of(location), LocationCacheHolder.locationTag(1L));
     }
 
     @Test
     void testGetByIdWhenNotFoundReturnsEmpty() {
-        when(locationCache.containsKey("location_1")).thenReturn(false);
         when(locationRepository.findById(1L)).thenReturn(Optional.empty());
 
         Optional<Location> result = locationService.getById(1L);
@@ -108,7 +175,26 @@ class LocationServiceTest {
     }
 
     @Test
-    void testCreateWithSunriseSunsetIdsAddsRelationsAndClearsCache() {
+    void testCachedMissIsInvalidatedWhenTheLocationIsCreated() {
+        when(locationRepository.findById(1L)).thenReturn(Optional.empty()).thenReturn(Optional.of(location));
+        when(locationRepository.save(any(Location.class))).thenReturn(location);
+
+        assertFalse(locationService.getById(1L).isPresent());
+        assertFalse(locationService.getById(1L).isPresent(), "the miss is cached");
+        locationService.create(location, null);
+
+        assertEquals(Optional.of(location), locationService.getById(1L));
+        verify(locationRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testCreateWithSunriseSunsetIdsAddsRelationsAndInvalidatesDependentEntries() {
+        Location other = new Location("Other", "Other Country", 1.0, 2.0);
+        other.setId(2L);
+        locationCache.put("all_locations", List.of(other), LocationCacheHolder.MEMBERSHIP_TAG);
+        locationCache.put("location_2", List.of(other));
+        locationCache.put("locations_date_2025-04-04", List.of(other), LocationCacheHolder.dateTag(LocalDate.parse("2025-04-04")));
+        locationCache.put("locations_date_2025-04-05", List.of(other), LocationCacheHolder.dateTag(LocalDate.parse("2025-04-05")));
         when(sunriseSunsetRepository.findAllById(List.of(1L))).thenReturn(List.of(sunriseSunset));
         when(locationRepository.save(any(Location.class))).thenReturn(location);
 
@@ -116,11 +202,20 @@ class LocationServiceTest {
 
         assertEquals(location, result);
         assertEquals(1, location.getSunriseSunsets().size());
-        verify(locationCache).clear();
+        assertNull(locationCache.get("all_locations"));
+        assertNull(locationCache.get("locations_date_2025-04-04"));
+        assertNotNull(locationCache.get("location_2"));
+        assertNotNull(locationCache.get("locations_date_2025-04-05"));
+        verify(locationCache, never()).clear();
     }
 
     @Test
-    void testUpdateWhenExistsUpdatesDataAndClearsCache() {
+    void testUpdateWhenExistsUpdatesDataAndInvalidatesDependentEntries() {
+        Location other = new Location("Other", "Other Country", 1.0, 2.0);
+        other.setId(2L);
+        locationCache.put("all_locations", List.of(location, other), LocationCacheHolder.MEMBERSHIP_TAG);
+        locationCache.put("location_1", List.of(location));
+        locationCache.put("location_2", List.of(other));
         Location updatedData = new Location();
         updatedData.setName("Updated Name");
         updatedData.setCountry("Updated Country");
@@ -135,7 +230,9 @@ class LocationServiceTest {
         assertEquals("Updated Name", result.get().getName());
         assertEquals("Updated Country", result.get().getCountry());
         assertEquals(1, result.get().getSunriseSunsets().size());
-        verify(locationCache).clear();
+        assertNull(locationCache.get("all_locations"));
+        assertNull(locationCache.get("location_1"));
+        assertNotNull(locationCache.get("location_2"));
     }
 
     @Test
@@ -148,14 +245,17 @@ class LocationServiceTest {
     }
 
     @Test
-    void testDeleteWhenExistsDeletesAndClearsCache() {
+    void testDeleteWhenExistsDeletesAndInvalidatesDependentEntries() {
+        locationCache.put("location_1", List.of(location));
+        locationCache.put("locations_date_2025-04-05", List.of(), LocationCacheHolder.dateTag(LocalDate.parse("2025-04-05")));
         when(locationRepository.findById(1L)).thenReturn(Optional.of(location));
 
         boolean result = locationService.delete(1L);
 
         assertTrue(result);
         verify(locationRepository).delete(location);
-        verify(locationCache).clear();
+        assertNull(locationCache.get("location_1"));
+        assertNotNull(locationCache.get("locations_date_2025-04-05"));
     }
 
     @Test
@@ -170,26 +270,54 @@ class LocationServiceTest {
 
     @Test
     void testGetLocationsByDateWhenCachedReturnsCachedData() {
-        when(locationCache.containsKey("locations_date_2025-04-04")).thenReturn(true);
-        when(locationCache.get("locations_date_2025-04-04")).thenReturn(List.of(location));
+        locationCache.put("locations_date_2025-04-04", List.of(location));
 
-        List<Location> result = locationService.getLocationsByDate("2025-04-04");
+        List<Location> result = locationService.getLocationsByDate(LocalDate.parse("2025-04-04"));
 
         assertEquals(1, result.size());
         assertEquals(location, result.get(0));
-        verify(locationRepository, never()).findLocationsBySunriseSunsetDate("2025-04-04");
+        verify(locationRepository, never()).findLocationsBySunriseSunsetDate(LocalDate.parse("2025-04-04"));
     }
 
     @Test
     void testGetLocationsByDateWhenNotCachedReturnsDatabaseData() {
-        when(locationCache.containsKey("locations_date_2025-04-04")).thenReturn(false);
-        when(locationRepository.findLocationsBySunriseSunsetDate("2025-04-04")).thenReturn(List.of(location));
+        when(locationRepository.findLocationsBySunriseSunsetDate(LocalDate.parse("2025-04-04"))).thenReturn(List.of(location));
 
-        List<Location> result = locationService.getLocationsByDate("2025-04-04");
+        List<Location> result = locationService.getLocationsByDate(LocalDate.parse("2025-04-04"));
 
         assertEquals(1, result.size());
         assertEquals(location, result.get(0));
-        verify(locationCache).put("locations_date_2025-04-04", List.of(location));
+        verify(locationCache).put("locations_date_2025-04-04", List.of(location),
+                LocationCacheHolder.dateTag(LocalDate.parse("2025-04-04")), LocationCacheHolder.seriesYearTag(2025));
+    }
+
+    @Test
+    void testGetLocationsByDateMergesDecodedLocationsInDatabaseOrder() {
+        LocalDate date = LocalDate.parse("2025-04-04");
+        Location brest = new Location("brest", "Belarus", 52.1, 23.7);
+        brest.setId(2L);
+        Location grodno = new Location("Гродно", "Belarus", 53.7, 23.8);
+        grodno.setId(3L);
+        when(locationRepository.findLocationsBySunriseSunsetDate(date)).thenReturn(List.of(location));
+        when(seriesService.decodeLocations(date)).thenReturn(List.of(grodno, brest));
+        // A case-insensitive collation puts "brest" first, where String.compareTo would put it after "Test Location".
+        when(locationRepository.findIdsOnDateOrWithSeriesOrderByName(2025, date)).thenReturn(List.of(2L, 1L, 3L));
+
+        when(seriesService.hasSeries(2025)).thenReturn(true);
+
+        List<Location> result = locationService.getLocationsByDate(date);
+
+        assertEquals(List.of(brest, location, grodno), result);
+        assertEquals(result, locationService.getLocationsByDate(date));
+        verify(seriesService, times(1)).decodeLocations(date);
+        verify(locationRepository, times(1)).findIdsOnDateOrWithSeriesOrderByName(2025, date);
+
+        // A new location may sit at a series coordinate, so creating one drops the merged list.
+        when(locationRepository.save(any(Location.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Location created = new Location("Lida", "Belarus", 53.9, 25.3);
+        created.setId(4L);
+        locationService.create(created, null);
+        assertNull(locationCache.get("locations_date_2025-04-04"));
     }
 
     @Test
@@ -203,18 +331,119 @@ class LocationServiceTest {
         existingLocation.setName("Existing Location");
         existingLocation.setCountry("Existing Country");
 
-        when(locationRepository.findById(1L)).thenReturn(Optional.of(location));
-        when(locationRepository.findById(0L)).thenReturn(Optional.empty());
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(locationRepository.findAllWithSunriseSunsetsByIdIn(Set.of(1L))).thenReturn(List.of(location));
         when(sunriseSunsetRepository.findAllById(List.of(1L))).thenReturn(List.of(sunriseSunset));
         when(locationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
-        List<Location> result = locationService.bulkCreateOrUpdate(List.of(newLocation, existingLocation), List.of(1L));
+        BulkUpsertResult bulk = locationService.bulkCreateOrUpdate(List.of(newLocation, existingLocation), List.of(1L));
+        List<Location> result = bulk.locations();
 
         assertEquals(2, result.size());
+        assertEquals(1, bulk.chunks().size());
+        assertEquals(1, bulk.chunks().get(0).inserted());
+        assertEquals(1, bulk.chunks().get(0).updated());
+        verify(locationRepository, never()).findById(anyLong());
         assertEquals("New Location", result.get(0).getName());
         assertEquals("Existing Location", result.get(1).getName());
         assertEquals(1, result.get(0).getSunriseSunsets().size());
         assertEquals(1, result.get(1).getSunriseSunsets().size());
-        verify(locationCache).clear();
+        verify(locationCache).invalidateMembership();
+        verify(locationCache).invalidateDates(Set.of(LocalDate.parse("2025-04-04")));
+    }
+
+    @Test
+    void testInvalidatedHotKeyIsReloadedOffTheRequestPath() {
+        locationCache.setRefreshExecutor(Runnable::run);
+        Location created = new Location("Minsk", "Belarus", 53.9, 27.6);
+        created.setId(2L);
+        when(locationRepository.findAll()).thenReturn(List.of(location)).thenReturn(List.of(location, created));
+        when(locationRepository.save(created)).thenReturn(created);
+        locationService.getAll();
+
+        locationService.create(created, null);
+
+        assertEquals(List.of(location, created), locationCache.get("all_locations"));
+        assertEquals(List.of(location, created), locationService.getAll());
+        verify(locationRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testRefreshAheadServesPreviousValueUntilReloadFinishes() {
+        List<Runnable> tasks = new ArrayList<>();
+        locationCache.setRefreshExecutor(tasks::add);
+        Location renamed = new Location("Renamed", "Test Country", null, null);
+        renamed.setId(1L);
+        when(locationRepository.findAll()).thenReturn(List.of(location)).thenReturn(List.of(renamed));
+        locationService.getAll();
+
+        assertEquals(1, locationCache.refreshAhead(0.0, Duration.ofMinutes(30), 64));
+        assertEquals(0, locationCache.refreshAhead(0.0, Duration.ofMinutes(30), 64), "reload already in flight");
+        assertEquals(List.of(location), locationService.getAll());
+
+        tasks.forEach(Runnable::run);
+
+        assertEquals(List.of(renamed), locationService.getAll());
+    }
+
+    @Test
+    void testCacheStatisticsCountHitsAndMisses() {
+        when(locationRepository.findAll()).thenReturn(List.of(location));
+
+        locationService.getAll();
+        locationService.getAll();
+
+        assertEquals(1L, locationService.getCacheStatistics().get("hits"));
+        assertEquals(1L, locationService.getCacheStatistics().get("misses"));
+        verify(locationRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testConcurrentMissesShareOneDatabaseLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(locationRepository.findAll()).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return List.of(location);
+        });
+
+        CompletableFuture<List<Location>> leader = CompletableFuture.supplyAsync(locationService::getAll);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Location>> follower = CompletableFuture.supplyAsync(locationService::getAll);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((long) locationService.getCacheStatistics().get("coalescedLoads") == 0L && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals(List.of(location), leader.get(5, TimeUnit.SECONDS));
+        assertSame(leader.get(), follower.get(5, TimeUnit.SECONDS));
+        verify(locationRepository, times(1)).findAll();
+        assertEquals(1L, locationService.getCacheStatistics().get("loads"));
+    }
+
+    @Test
+    void testGetPageReturnsCursorForFullPagesAndCachesTailUntilCreate() {
+        Location second = new Location("Second", "Country", 1.0, 2.0);
+        second.setId(2L);
+        when(locationRepository.findIdsAfter(0L, PageRequest.ofSize(1))).thenReturn(List.of(1L));
+        when(locationRepository.findAllWithSunriseSunsetsByIdIn(List.of(1L))).thenReturn(List.of(location));
+        when(locationRepository.findIdsAfter(1L, PageRequest.ofSize(1))).thenReturn(List.of());
+        when(locationRepository.save(any(Location.class))).thenReturn(second);
+
+        KeysetPage<Location> first = locationService.getPage(null, 1);
+        KeysetPage<Location> tail = locationService.getPage(first.nextCursor(), 1);
+        locationService.create(second, null);
+        locationService.getPage(null, 1);
+        locationService.getPage(first.nextCursor(), 1);
+
+        assertEquals(List.of(location), first.items());
+        assertEquals(KeysetPage.encodeCursor(1L), first.nextCursor());
+        assertTrue(tail.items().isEmpty());
+        assertNull(tail.nextCursor());
+        verify(locationRepository, times(1)).findIdsAfter(0L, PageRequest.ofSize(1));
+        verify(locationRepository, times(2)).findIdsAfter(1L, PageRequest.ofSize(1));
     }
-}
\ No newline at end of file
+}
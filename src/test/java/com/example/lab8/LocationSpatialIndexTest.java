@@ -0,0 +1,92 @@
+package com.example.lab8.service;
+
+import com.example.lab8.repository.LocationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationSpatialIndexTest {
+
+    @Mock
+    private LocationRepository repository;
+
+    @InjectMocks
+    private LocationSpatialIndex spatialIndex;
+
+    @Test
+    void testNearestMatchesBruteForce() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            rows.add(new Object[]{id, Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                    360 * random.nextDouble() - 180});
+        }
+        when(repository.findCoordinates()).thenReturn(rows);
+
+        for (int query = 0; query < 50; query++) {
+            double lat = 180 * random.nextDouble() - 90;
+            double lon = 360 * random.nextDouble() - 180;
+            List<LocationSpatialIndex.Neighbor> expected = rows.stream()
+                    .map(row -> new LocationSpatialIndex.Neighbor((Long) row[0],
+                            haversine(lat, lon, (Double) row[1], (Double) row[2])))
+                    .sorted(Comparator.comparingDouble(LocationSpatialIndex.Neighbor::distanceKm))
+                    .limit(7)
+                    .toList();
+
+            List<LocationSpatialIndex.Neighbor> actual = spatialIndex.nearest(lat, lon, 7, null);
+
+            assertEquals(expected.stream().map(LocationSpatialIndex.Neighbor::id).toList(),
+                    actual.stream().map(LocationSpatialIndex.Neighbor::id).toList());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).distanceKm(), actual.get(i).distanceKm(), 1e-6);
+            }
+        }
+        verify(repository, times(1)).findCoordinates();
+    }
+
+    @Test
+    void testRadiusAndAntimeridian() {
+        when(repository.findCoordinates()).thenReturn(List.of(
+                new Object[]{1L, 0.0, 179.9},
+                new Object[]{2L, 0.0, -179.9},
+                new Object[]{3L, 0.0, 170.0}));
+
+        List<LocationSpatialIndex.Neighbor> neighbors = spatialIndex.nearest(0.0, 180.0, 3, 50.0);
+
+        assertEquals(2, neighbors.size());
+        assertEquals(11.1, neighbors.get(0).distanceKm(), 0.1);
+        assertEquals(11.1, neighbors.get(1).distanceKm(), 0.1);
+    }
+
+    @Test
+    void testMarkDirtyRebuildsOnNextQuery() {
+        when(repository.findCoordinates())
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 53.9, 27.56}))
+                .thenReturn(List.of(new Object[]{1L, 53.9, 27.56}, new Object[]{2L, 51.5, -0.12}));
+
+        assertEquals(1, spatialIndex.size());
+        spatialIndex.markDirty();
+
+        assertEquals(2, spatialIndex.size());
+        assertEquals(2L, spatialIndex.nearest(51.5, -0.1, 1, null).get(0).id());
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * LocationSpatialIndex.EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
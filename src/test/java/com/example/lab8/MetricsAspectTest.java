@@ -0,0 +1,74 @@
+package com.example.lab8.aspect;
+
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.service.ResourceVersions;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsAspectTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testProxiedServiceCallRecordsTimer() {
+        ResourceVersions versions = proxy(new ResourceVersions());
+
+        versions.locations();
+        versions.locations();
+
+        Timer timer = registry.find("app.method")
+                .tags("layer", "service", "class", "ResourceVersions", "method", "locations", "outcome", "success")
+                .timer();
+        assertNotNull(timer);
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    void testFailedCallIsTaggedWithTheExceptionAndRethrown() {
+        ResourceVersions versions = proxy(new ResourceVersions());
+
+        assertThrows(NullPointerException.class, () -> versions.locations((LocationView) null));
+
+        Timer timer = registry.find("app.method")
+                .tags("method", "locations", "outcome", "NullPointerException")
+                .timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertNull(registry.find("app.method").tag("outcome", "success").timer());
+    }
+
+    @Test
+    void testTimerIsRegisteredOncePerMethodAndOutcome() {
+        AtomicInteger registrations = new AtomicInteger();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                registrations.incrementAndGet();
+                return id;
+            }
+        });
+        ResourceVersions versions = proxy(new ResourceVersions());
+
+        versions.locations();
+        versions.locations();
+        versions.locations();
+
+        assertEquals(1, registrations.get());
+        assertEquals(3, registry.get("app.method").tag("method", "locations").timer().count());
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new MetricsAspect(registry));
+        return factory.getProxy();
+    }
+}
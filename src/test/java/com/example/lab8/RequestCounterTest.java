@@ -0,0 +1,73 @@
+package com.example.lab8.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCounterTest {
+
+    @BeforeEach
+    void setUp() {
+        RequestCounter.reset();
+    }
+
+    @Test
+    void testConcurrentIncrementsAreNotLost() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    RequestCounter.increment("location.getAll");
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(80_000L, RequestCounter.getRequestCount());
+    }
+
+    @Test
+    void testConcurrentIncrementsAreNotLostFromTheWindowedRate() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                // Spread over a few seconds so writers race the bucket rollover.
+                long until = System.currentTimeMillis() + 2_500;
+                while (System.currentTimeMillis() < until) {
+                    RequestCounter.increment("location.getAll");
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        long count = RequestCounter.getRequestCount();
+        assertEquals((double) count / 900, (double) RequestCounter.getBreakdown().get("rate15m"), 1e-9);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBreakdownGroupsByMethodAndStatus() {
+        RequestCounter.increment("location.getAll");
+        RequestCounter.increment("location.getAll");
+        RequestCounter.increment("sunriseSunset.getByDate");
+        RequestCounter.recordStatus(200);
+        RequestCounter.recordStatus(404);
+
+        Map<String, Object> breakdown = RequestCounter.getBreakdown();
+        Map<String, Map<String, Object>> methods = (Map<String, Map<String, Object>>) breakdown.get("methods");
+        Map<String, Map<String, Object>> statuses = (Map<String, Map<String, Object>>) breakdown.get("statuses");
+
+        assertEquals(3L, breakdown.get("count"));
+        assertEquals(2L, methods.get("location.getAll").get("count"));
+        assertEquals(2.0 / 60, (double) methods.get("location.getAll").get("rate1m"), 1e-9);
+        assertEquals(1L, statuses.get("404").get("count"));
+    }
+}
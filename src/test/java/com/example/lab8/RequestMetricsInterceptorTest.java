@@ -0,0 +1,70 @@
+package com.example.lab8.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor(registry);
+    private final HibernateRequestStatistics statistics = new HibernateRequestStatistics();
+
+    @AfterEach
+    void tearDown() {
+        HibernateRequestStatistics.finish();
+    }
+
+    @Test
+    void testRequestRecordsItsStatementsAndLoadedEntities() {
+        request(() -> {
+            statistics.inspect("select 1");
+            statistics.inspect("select 2");
+            statistics.onPostLoad(null);
+        });
+
+        assertEquals(2.0, summary("hibernate.request.statements").totalAmount());
+        assertEquals(1.0, summary("hibernate.request.entities.loaded").totalAmount());
+    }
+
+    @Test
+    void testCountersAreResetBetweenRequestsOnTheSameThread() {
+        request(() -> {
+            statistics.inspect("select 1");
+            statistics.inspect("select 2");
+        });
+        assertEquals(0, HibernateRequestStatistics.statements(), "finish clears the thread's counters");
+
+        // Statements outside a request, e.g. a scheduled job reusing the thread, are not attributed.
+        statistics.inspect("select 3");
+        request(() -> statistics.inspect("select 4"));
+
+        DistributionSummary statements = summary("hibernate.request.statements");
+        assertEquals(2, statements.count());
+        assertEquals(2.0, statements.max());
+        assertEquals(3.0, statements.totalAmount());
+    }
+
+    private void request(Runnable work) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/locations/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/locations/{id}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+        work.run();
+        interceptor.afterCompletion(request, response, new Object(), null);
+    }
+
+    private DistributionSummary summary(String name) {
+        DistributionSummary summary = registry.find(name)
+                .tags("method", "GET", "uri", "/api/locations/{id}")
+                .summary();
+        assertNotNull(summary);
+        return summary;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.lab8.service;
+
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.LocationView;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsTest {
+
+    private final ResourceVersions versions = new ResourceVersions();
+
+    @Test
+    void testLocationChangeOnlyMovesItsOwnTag() {
+        String list = versions.locations();
+        String first = versions.location(1L);
+        String second = versions.location(2L);
+        String sunriseSunsets = versions.sunriseSunsets();
+
+        versions.onChange(ChangeEvent.upsert(location(1L)));
+
+        assertNotEquals(list, versions.locations());
+        assertNotEquals(first, versions.location(1L));
+        assertEquals(second, versions.location(2L));
+        assertEquals(sunriseSunsets, versions.sunriseSunsets());
+    }
+
+    @Test
+    void testSunriseSunsetChangeMovesEveryLocationTag() {
+        String list = versions.locations();
+        String location = versions.location(1L);
+        String sunriseSunsets = versions.sunriseSunsets();
+
+        SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52");
+        sunriseSunset.setId(5L);
+        versions.onChange(ChangeEvent.upsert(sunriseSunset));
+
+        assertNotEquals(list, versions.locations());
+        assertNotEquals(location, versions.location(1L));
+        assertNotEquals(sunriseSunsets, versions.sunriseSunsets());
+    }
+
+    @Test
+    void testSummaryTagsIgnoreSunriseSunsetChangesAndDifferPerView() {
+        String summaries = versions.locations(LocationView.SUMMARY);
+        String names = versions.location(1L, LocationView.of(null, List.of("name")));
+
+        SunriseSunset sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52");
+        sunriseSunset.setId(5L);
+        versions.onChange(ChangeEvent.upsert(sunriseSunset));
+
+        assertEquals(summaries, versions.locations(LocationView.SUMMARY));
+        assertEquals(names, versions.location(1L, LocationView.of(null, List.of("name"))));
+        assertNotEquals(summaries, versions.locations());
+    }
+
+    @Test
+    void testTagsNeverRepeatAfterDeleteOrResync() {
+        String untouched = versions.location(1L);
+        versions.onChange(ChangeEvent.upsert(location(1L)));
+        String updated = versions.location(1L);
+        versions.onChange(ChangeEvent.deleted(ChangeEvent.LOCATION, 1L));
+        String deleted = versions.location(1L);
+        versions.onChange(ChangeEvent.resync());
+
+        assertNotEquals(untouched, deleted);
+        assertNotEquals(updated, deleted);
+        assertNotEquals(deleted, versions.location(1L));
+        assertNotEquals(untouched, versions.location(2L));
+    }
+
+    @Test
+    void testTagsAreStrongAndCarryBootEpoch() {
+        assertTrue(versions.sunriseSunsets().matches("\"[0-9a-z]+-0\""));
+    }
+
+    private static Location location(long id) {
+        Location location = new Location("Minsk", "Belarus", 53.9, 27.6);
+        location.setId(id);
+        return location;
+    }
+}
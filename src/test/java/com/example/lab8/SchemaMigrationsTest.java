@@ -0,0 +1,73 @@
+package com.example.lab8.config;
+
+import com.example.lab8.service.SunriseSunsetCompaction;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the migrations against H2 in PostgreSQL mode, which accepts the same ALTER ... USING.
+@ExtendWith(MockitoExtension.class)
+class SchemaMigrationsTest {
+
+    @Mock
+    private SunriseSunsetCompaction compaction;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sunrise_sunset (id BIGINT PRIMARY KEY, date VARCHAR(255), "
+                + "latitude DOUBLE PRECISION, longitude DOUBLE PRECISION)");
+    }
+
+    @Test
+    void testLegacyTextDatesBecomeDatesAndMalformedOnesBecomeNull() {
+        jdbcTemplate.update("INSERT INTO sunrise_sunset VALUES (1, '2025-04-04', 53.9, 27.6), "
+                + "(2, '04.04.2025', 53.9, 27.6), (3, 'tomorrow', 53.9, 27.6), (4, NULL, 53.9, 27.6)");
+
+        new SchemaMigrations(jdbcTemplate, compaction).migrate();
+
+        assertEquals("date", dateColumnType());
+        Map<Long, Object> dates = new HashMap<>();
+        jdbcTemplate.query("SELECT id, date FROM sunrise_sunset",
+                rs -> { dates.put(rs.getLong(1), rs.getObject(2, LocalDate.class)); });
+        assertEquals(LocalDate.parse("2025-04-04"), dates.get(1L));
+        assertNull(dates.get(2L));
+        assertNull(dates.get(3L));
+        assertNull(dates.get(4L));
+    }
+
+    @Test
+    void testMigrationIsIdempotent() {
+        jdbcTemplate.update("INSERT INTO sunrise_sunset VALUES (1, '2025-04-04', 53.9, 27.6)");
+        SchemaMigrations migrations = new SchemaMigrations(jdbcTemplate, compaction);
+
+        migrations.migrate();
+        migrations.migrate();
+
+        assertEquals("date", dateColumnType());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sunrise_sunset WHERE date = DATE '2025-04-04'",
+                Integer.class));
+    }
+
+    private String dateColumnType() {
+        return jdbcTemplate.queryForObject("SELECT data_type FROM information_schema.columns "
+                + "WHERE table_schema = current_schema() AND table_name = 'sunrise_sunset' AND column_name = 'date'",
+                String.class).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.lab8.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolarCalculatorTest {
+
+    @Test
+    void testLondonSummerSolsticeMatchesPublishedTimes() {
+        LocalDate date = LocalDate.of(2025, 6, 21);
+
+        // 04:43 and 21:21 British Summer Time (UTC+1).
+        assertEquals(3 * 60 + 43, SolarCalculator.sunrise(51.5074, -0.1278, date), 1.0);
+        assertEquals(20 * 60 + 21, SolarCalculator.sunset(51.5074, -0.1278, date), 1.0);
+    }
+
+    @Test
+    void testEquinoxAtEquatorIsAboutTwelveHours() {
+        LocalDate date = LocalDate.of(2025, 3, 20);
+
+        double sunrise = SolarCalculator.sunrise(0, 0, date);
+        double sunset = SolarCalculator.sunset(0, 0, date);
+
+        assertEquals(6 * 60 + 4, sunrise, 1.0);
+        assertEquals(18 * 60 + 11, sunset, 1.0);
+    }
+
+    @Test
+    void testPolarDayAndNightHaveNoEvents() {
+        assertTrue(Double.isNaN(SolarCalculator.sunrise(78.2, 15.6, LocalDate.of(2025, 6, 21))));
+        assertTrue(Double.isNaN(SolarCalculator.sunset(78.2, 15.6, LocalDate.of(2025, 12, 21))));
+        assertNull(SolarCalculator.format(Double.NaN));
+    }
+
+    @Test
+    void testBatchFormsMatchSingleCalls() {
+        LocalDate first = LocalDate.of(2025, 1, 1);
+        double[] sunrise = new double[365];
+        double[] sunset = new double[365];
+
+        SolarCalculator.calculate(53.9, 27.5667, first, 365, sunrise, sunset);
+
+        for (int i = 0; i < 365; i += 30) {
+            assertEquals(SolarCalculator.sunrise(53.9, 27.5667, first.plusDays(i)), sunrise[i]);
+            assertEquals(SolarCalculator.sunset(53.9, 27.5667, first.plusDays(i)), sunset[i]);
+        }
+
+        double[] latitudes = {53.9, -33.87, 40.71};
+        double[] longitudes = {27.5667, 151.21, -74.01};
+        double[] rises = new double[3];
+        double[] sets = new double[3];
+        SolarCalculator.calculate(latitudes, longitudes, first, rises, sets);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SolarCalculator.sunrise(latitudes[i], longitudes[i], first), rises[i]);
+            assertEquals(SolarCalculator.sunset(latitudes[i], longitudes[i], first), sets[i]);
+        }
+    }
+
+    @Test
+    void testFormatWrapsIntoTheDay() {
+        assertEquals("23:30", SolarCalculator.format(-30));
+        assertEquals("00:15", SolarCalculator.format(1455));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.lab8.controller;
+
+import com.example.lab8.exception.GlobalExceptionHandler;
+import com.example.lab8.service.ExportService;
+import com.example.lab8.service.ResourceVersions;
+import com.example.lab8.service.SunriseSunsetSeriesService;
+import com.example.lab8.service.SunriseSunsetService;
+import com.example.lab8.service.SunriseSunsetWriteBehind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetControllerTest {
+
+    @Mock
+    private SunriseSunsetService sunriseSunsetService;
+
+    @Mock
+    private ExportService exportService;
+
+    @Mock
+    private ResourceVersions versions;
+
+    @Mock
+    private SunriseSunsetWriteBehind writeBehind;
+
+    @Mock
+    private SunriseSunsetSeriesService seriesService;
+
+    @InjectMocks
+    private SunriseSunsetController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testByDateRangeStreamsNdjson() throws Exception {
+        LocalDate from = LocalDate.parse("2025-04-04");
+        LocalDate to = LocalDate.parse("2025-04-30");
+        String ndjson = "{\"id\":10,\"date\":\"2025-04-04\",\"latitude\":53.9,\"longitude\":27.6}\n";
+        when(exportService.exportSunriseSunsetsByDateRange(eq(from), eq(to), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write(ndjson.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        MvcResult started = mockMvc.perform(get("/api/sunrise-sunset/by-date-range")
+                        .param("from", "2025-04-04").param("to", "2025-04-30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(ndjson));
+    }
+
+    @Test
+    void testByDateRangeOfAnEmptyRangeReturnsAnEmptyBody() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/sunrise-sunset/by-date-range")
+                        .param("from", "2025-04-04").param("to", "2025-04-04"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testByDateRangeRejectsFromAfterTo() throws Exception {
+        mockMvc.perform(get("/api/sunrise-sunset/by-date-range").param("from", "2025-04-30").param("to", "2025-04-04"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void testByDateRangeRejectsARangeOverTheLimit() throws Exception {
+        mockMvc.perform(get("/api/sunrise-sunset/by-date-range").param("from", "2024-01-01").param("to", "2025-06-30"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(exportService);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.lab8.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetIdsTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testIdsComeFromWholeBlocksAndTheRestIsKept() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L, 50L, 100L);
+        SunriseSunsetIds ids = new SunriseSunsetIds(jdbcTemplate);
+
+        assertArrayEquals(new long[]{1, 2, 3}, ids.reserve(3));
+        long[] next = ids.reserve(48);
+        assertEquals(4, next[0]);
+        assertEquals(51, next[47]);
+        verify(jdbcTemplate, times(3)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void testNextvalDoesNotRunUnderTheLock() throws Exception {
+        // Each nextval waits until both callers are inside it, which only happens if neither holds the lock.
+        CountDownLatch bothFetching = new CountDownLatch(2);
+        AtomicLong sequence = new AtomicLong();
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocation -> {
+            bothFetching.countDown();
+            assertTrue(bothFetching.await(5, TimeUnit.SECONDS), "the other caller is blocked on the lock");
+            return sequence.addAndGet(50);
+        });
+        SunriseSunsetIds ids = new SunriseSunsetIds(jdbcTemplate);
+
+        CompletableFuture<long[]> first = CompletableFuture.supplyAsync(() -> ids.reserve(50));
+        CompletableFuture<long[]> second = CompletableFuture.supplyAsync(() -> ids.reserve(50));
+
+        long firstStart = first.get(10, TimeUnit.SECONDS)[0];
+        long secondStart = second.get(10, TimeUnit.SECONDS)[0];
+        assertNotEquals(firstStart, secondStart);
+        assertEquals(Math.min(firstStart, secondStart) + 50, Math.max(firstStart, secondStart));
+    }
+}
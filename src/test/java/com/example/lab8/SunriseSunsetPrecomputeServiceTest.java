@@ -0,0 +1,196 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SecondLevelCache;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.dto.PrecomputeStatus;
+import com.example.lab8.exception.BadRequestException;
+import com.example.lab8.repository.LocationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetPrecomputeServiceTest {
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private ResultSet storedRow;
+
+    @Mock
+    private SunriseSunsetSnapshot snapshot;
+
+    @Mock
+    private SecondLevelCache secondLevelCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SunriseSunsetSeriesService seriesService;
+
+    private SunriseSunsetCacheHolder sunriseSunsetCache;
+    private SunriseSunsetPrecomputeService precomputeService;
+
+    @BeforeEach
+    void setUp() {
+        sunriseSunsetCache = new SunriseSunsetCacheHolder(100, Duration.ofMinutes(5));
+        precomputeService = precomputeService("rows");
+    }
+
+    @AfterEach
+    void tearDown() {
+        precomputeService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFillsMissingDatesWithSequenceBlockIds() throws Exception {
+        when(locationRepository.findCoordinates()).thenReturn(List.of(
+                new Object[]{1L, 53.9, 27.56},
+                new Object[]{2L, 51.5, -0.12},
+                new Object[]{3L, 53.9, 27.56}));
+        // Location 1 already has the first day of the range.
+        when(resultSet.getLong(1)).thenReturn(1L);
+        when(resultSet.getObject(2, LocalDate.class)).thenReturn(LocalDate.parse("2025-01-01"));
+        // A row for location 2's position on the second day is stored but not linked to it.
+        when(storedRow.getLong(1)).thenReturn(7L);
+        when(storedRow.getDouble(2)).thenReturn(51.5);
+        when(storedRow.getDouble(3)).thenReturn(-0.12);
+        when(storedRow.getObject(4, LocalDate.class)).thenReturn(LocalDate.parse("2025-01-02"));
+        doAnswer(invocation -> {
+            SqlParameterSource params = invocation.getArgument(1);
+            if (invocation.<String>getArgument(0).startsWith("SELECT ls.location_id")) {
+                if (((List<Long>) params.getValue("ids")).contains(1L)) {
+                    invocation.<RowCallbackHandler>getArgument(2).processRow(resultSet);
+                }
+            } else if (((Set<Double>) params.getValue("latitudes")).contains(51.5)) {
+                invocation.<RowCallbackHandler>getArgument(2).processRow(storedRow);
+            }
+            return null;
+        }).when(namedJdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L, 50L, 100L);
+        List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO sunrise_sunset "), anyList())).thenAnswer(invocation -> {
+            invocation.<List<Object[]>>getArgument(1).forEach(row -> ids.add((Long) row[0]));
+            return new int[0];
+        });
+        List<Object[]> links = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO location_sunrise_sunset "), anyList()))
+                .thenAnswer(invocation -> {
+                    links.addAll(invocation.getArgument(1));
+                    return new int[0];
+                });
+        sunriseSunsetCache.put("all_sunrise_sunsets", List.of());
+
+        precomputeService.start(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 3));
+        PrecomputeStatus status = awaitFinished();
+
+        assertEquals("COMPLETED", status.state(), status.error());
+        assertEquals(3, status.processedLocations());
+        // Locations 1 and 3 share one row per date; location 2 reuses the stored row.
+        assertEquals(5, status.insertedRows());
+        assertEquals(5, ids.stream().distinct().count());
+        assertTrue(ids.stream().allMatch(id -> id >= 1 && id <= 100));
+        assertEquals(8, links.size());
+        assertTrue(links.stream().anyMatch(link -> link[0].equals(2L) && link[1].equals(7L)));
+        assertEquals(ids.size(), links.stream().map(link -> link[1]).filter(ids::contains).distinct().count());
+        assertNull(sunriseSunsetCache.get("all_sunrise_sunsets"));
+        verify(snapshot).invalidate();
+        verify(secondLevelCache).evictAll();
+        verify(eventPublisher).publishEvent(ChangeEvent.resync());
+    }
+
+    @Test
+    void testSeriesStorageStoresOneSeriesPerPositionAndYear() throws Exception {
+        precomputeService.shutdown();
+        precomputeService = precomputeService("series");
+        when(locationRepository.findCoordinates()).thenReturn(List.of(
+                new Object[]{1L, 53.9, 27.56},
+                new Object[]{2L, 51.5, -0.12},
+                new Object[]{3L, 53.9, 27.56}));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        precomputeService.start(LocalDate.of(2025, 12, 30), LocalDate.of(2026, 1, 2));
+        PrecomputeStatus status = awaitFinished();
+
+        assertEquals("COMPLETED", status.state(), status.error());
+        assertEquals(3, status.processedLocations());
+        assertEquals(4, status.storedSeries());
+        assertEquals(0, status.insertedRows());
+        verify(seriesService).store(53.9, 27.56, 2025);
+        verify(seriesService).store(53.9, 27.56, 2026);
+        verify(seriesService).store(51.5, -0.12, 2025);
+        verify(seriesService).store(51.5, -0.12, 2026);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testRejectsInvertedRange() {
+        assertThrows(BadRequestException.class,
+                () -> precomputeService.start(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+    }
+
+    private SunriseSunsetPrecomputeService precomputeService(String storage) {
+        return new SunriseSunsetPrecomputeService(locationRepository, jdbcTemplate, namedJdbcTemplate,
+                new SunriseSunsetIds(jdbcTemplate), transactionTemplate, sunriseSunsetCache,
+                new LocationCacheHolder(100, Duration.ofMinutes(5)), snapshot, secondLevelCache, eventPublisher,
+                seriesService, storage, 2, 1, 500, 365);
+    }
+
+    private PrecomputeStatus awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        PrecomputeStatus status = precomputeService.getStatus();
+        while ("RUNNING".equals(status.state()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = precomputeService.getStatus();
+        }
+        return status;
+    }
+}
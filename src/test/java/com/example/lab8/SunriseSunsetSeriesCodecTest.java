@@ -0,0 +1,65 @@
+package com.example.lab8.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SunriseSunsetSeriesCodecTest {
+
+    @Test
+    void testYearRoundTripsAndStaysSmall() {
+        int[] sunrise = new int[366];
+        int[] sunset = new int[366];
+        fill(78.2, 15.6, 2024, sunrise, sunset);
+
+        byte[] data = SunriseSunsetSeriesCodec.encode(2024, sunrise, sunset);
+        SunriseSunsetSeriesCodec.Day[] days = SunriseSunsetSeriesCodec.decode(data);
+
+        assertEquals(2024, SunriseSunsetSeriesCodec.year(data));
+        assertEquals(366, days.length);
+        for (int day = 0; day < 366; day++) {
+            assertEquals(new SunriseSunsetSeriesCodec.Day(sunrise[day], sunset[day]), days[day]);
+        }
+        // Svalbard has polar day and night, so some days have no event at all.
+        assertEquals(SunriseSunsetSeriesCodec.NO_EVENT, days[172].sunrise());
+        assertTrue(data.length < 1000, data.length + " bytes");
+    }
+
+    @Test
+    void testSingleDayMatchesSolarCalculator() {
+        int[] sunrise = new int[365];
+        int[] sunset = new int[365];
+        fill(53.9, 27.56, 2025, sunrise, sunset);
+        byte[] data = SunriseSunsetSeriesCodec.encode(2025, sunrise, sunset);
+        LocalDate date = LocalDate.of(2025, 4, 4);
+
+        SunriseSunsetSeriesCodec.Day day = SunriseSunsetSeriesCodec.day(data, date);
+
+        assertEquals(SolarCalculator.format(SolarCalculator.sunrise(53.9, 27.56, date)),
+                SunriseSunsetSeriesCodec.format(day.sunrise()));
+        assertEquals(SolarCalculator.format(SolarCalculator.sunset(53.9, 27.56, date)),
+                SunriseSunsetSeriesCodec.format(day.sunset()));
+        assertThrows(IllegalArgumentException.class, () -> SunriseSunsetSeriesCodec.day(data, LocalDate.of(2026, 1, 1)));
+    }
+
+    @Test
+    void testRejectsWrongLengthAndForeignData() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SunriseSunsetSeriesCodec.encode(2025, new int[366], new int[366]));
+        assertThrows(IllegalArgumentException.class, () -> SunriseSunsetSeriesCodec.year(new byte[]{9, 0, 0, 0, 0}));
+        assertThrows(IllegalArgumentException.class,
+                () -> SunriseSunsetSeriesCodec.decode(new byte[]{1, 7, (byte) 233, 1, 109}));
+    }
+
+    private static void fill(double latitude, double longitude, int year, int[] sunrise, int[] sunset) {
+        double[] rise = new double[sunrise.length];
+        double[] set = new double[sunset.length];
+        SolarCalculator.calculate(latitude, longitude, LocalDate.of(year, 1, 1), sunrise.length, rise, set);
+        for (int day = 0; day < sunrise.length; day++) {
+            sunrise[day] = SunriseSunsetSeriesCodec.minuteOfDay(rise[day]);
+            sunset[day] = SunriseSunsetSeriesCodec.minuteOfDay(set[day]);
+        }
+    }
+}
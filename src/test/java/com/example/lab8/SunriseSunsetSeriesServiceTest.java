@@ -0,0 +1,88 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunsetSeries;
+import com.example.lab8.repository.LocationRepository;
+import com.example.lab8.repository.SunriseSunsetSeriesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetSeriesServiceTest {
+
+    @Mock
+    private SunriseSunsetSeriesRepository repository;
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    private final LocationCacheHolder locationCache = new LocationCacheHolder(100, Duration.ofMinutes(5));
+
+    private SunriseSunsetSeriesService seriesService;
+
+    private Location location;
+
+    @BeforeEach
+    void setUp() {
+        seriesService = new SunriseSunsetSeriesService(repository, locationRepository, locationCache,
+                Duration.ofMinutes(5));
+        location = new Location("Minsk", "Belarus", 53.9, 27.56);
+        location.setId(1L);
+    }
+
+    @Test
+    void testSeriesThatIsNotStoredIsEncodedWithoutWriting() {
+        when(locationRepository.findById(1L)).thenReturn(Optional.of(location));
+        when(repository.findByLatitudeAndLongitudeAndYear(53.9, 27.56, 2025)).thenReturn(Optional.empty());
+
+        SunriseSunsetSeries series = seriesService.getSeries(1L, 2025);
+
+        assertNull(series.getId());
+        LocalDate date = LocalDate.of(2025, 4, 4);
+        SunriseSunsetSeriesCodec.Day day = SunriseSunsetSeriesCodec.day(series.getData(), date);
+        assertEquals(SolarCalculator.format(SolarCalculator.sunrise(53.9, 27.56, date)),
+                SunriseSunsetSeriesCodec.format(day.sunrise()));
+        verify(repository, never()).save(any());
+        // Nothing stored, so /by-date reads still see no series for the year.
+        when(repository.findByYear(2025)).thenReturn(List.of());
+        assertEquals(List.of(), seriesService.decodeDay(date));
+    }
+
+    @Test
+    void testStoredSeriesIsReturnedAsIs() {
+        when(locationRepository.findById(1L)).thenReturn(Optional.of(location));
+        SunriseSunsetSeries stored = new SunriseSunsetSeries(53.9, 27.56, 2025, new byte[0]);
+        when(repository.findByLatitudeAndLongitudeAndYear(53.9, 27.56, 2025)).thenReturn(Optional.of(stored));
+
+        assertSame(stored, seriesService.getSeries(1L, 2025));
+    }
+
+    @Test
+    void testStoringASeriesEvictsThatYearsMergedLocationLists() {
+        when(repository.findByYear(2025)).thenReturn(List.of());
+        assertFalse(seriesService.hasSeries(2025));
+        locationCache.put("locations_date_2025-04-04", List.of(location), LocationCacheHolder.seriesYearTag(2025));
+        locationCache.put("locations_date_2024-04-04", List.of(location), LocationCacheHolder.seriesYearTag(2024));
+        when(repository.save(any(SunriseSunsetSeries.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SunriseSunsetSeries stored = seriesService.store(53.9, 27.56, 2025);
+
+        assertNull(locationCache.get("locations_date_2025-04-04"));
+        assertNotNull(locationCache.get("locations_date_2024-04-04"));
+        when(repository.findByYear(2025)).thenReturn(List.of(stored));
+        assertTrue(seriesService.hasSeries(2025), "the per-year series cache was dropped too");
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.lab8.service;
+
+import com.example.lab8.config.LocationCacheHolder;
+import com.example.lab8.config.SunriseSunsetCacheHolder;
+import com.example.lab8.dto.ChangeEvent;
+import com.example.lab8.model.Location;
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.SunriseSunsetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetServiceTest {
+
+    @Mock
+    private SunriseSunsetRepository repository;
+
+    @Spy
+    private SunriseSunsetCacheHolder sunriseSunsetCache = new SunriseSunsetCacheHolder(100, Duration.ofMinutes(5));
+
+    @Spy
+    private LocationCacheHolder locationCache = new LocationCacheHolder(100, Duration.ofMinutes(5));
+
+    @Mock
+    private SunriseSunsetSnapshot snapshot;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SunriseSunsetSeriesService seriesService;
+
+    @Mock
+    private SunriseSunsetIds sunriseSunsetIds;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private SunriseSunsetService sunriseSunsetService;
+
+    private SunriseSunset sunriseSunset;
+
+    @BeforeEach
+    void setUp() {
+        sunriseSunset = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52");
+        sunriseSunset.setId(1L);
+    }
+
+    @Test
+    void testGetByDateReadsThroughCache() {
+        when(repository.findByDate(LocalDate.parse("2025-04-04"))).thenReturn(List.of(sunriseSunset));
+
+        List<SunriseSunset> first = sunriseSunsetService.getByDate(LocalDate.parse("2025-04-04"));
+        List<SunriseSunset> second = sunriseSunsetService.getByDate(LocalDate.parse("2025-04-04"));
+
+        assertEquals(List.of(sunriseSunset), first);
+        assertSame(first, second);
+        verify(repository, times(1)).findByDate(LocalDate.parse("2025-04-04"));
+        assertEquals(1L, sunriseSunsetService.getCacheStatistics().get("hits"));
+    }
+
+    @Test
+    void testGetByDateAddsDecodedSeriesDaysForPositionsWithoutRows() {
+        when(repository.findByDate(LocalDate.parse("2025-04-04"))).thenReturn(List.of(sunriseSunset));
+        SunriseSunset samePosition = new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:42", "19:51");
+        SunriseSunset otherPosition = new SunriseSunset(LocalDate.parse("2025-04-04"), 51.5, -0.12, "05:28", "18:37");
+        when(seriesService.decodeDay(LocalDate.parse("2025-04-04"))).thenReturn(List.of(samePosition, otherPosition));
+
+        List<SunriseSunset> result = sunriseSunsetService.getByDate(LocalDate.parse("2025-04-04"));
+
+        assertEquals(List.of(sunriseSunset, otherPosition), result);
+        assertEquals(List.of(sunriseSunset), sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+    }
+
+    @Test
+    void testGetAllReadsThroughCache() {
+        when(repository.findAll()).thenReturn(List.of(sunriseSunset));
+
+        sunriseSunsetService.getAll();
+        sunriseSunsetService.getAll();
+
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void testCreateInvalidatesOnlyNewDateAndFullList() {
+        sunriseSunsetCache.put("all_sunrise_sunsets", List.of(sunriseSunset));
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-04", List.of(sunriseSunset));
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-05", List.of());
+        when(sunriseSunsetIds.reserve(1)).thenReturn(new long[]{7L});
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+
+        SunriseSunset result = sunriseSunsetService.create(
+                new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:40", "19:53"));
+
+        assertEquals(7L, result.getId());
+        verify(repository, never()).save(any(SunriseSunset.class));
+        verify(eventPublisher).publishEvent(ChangeEvent.upsert(result));
+        assertNull(sunriseSunsetCache.get("all_sunrise_sunsets"));
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+        assertNotNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-05"));
+    }
+
+    @Test
+    void testCreateWithStoredKeyAndSameTimesWritesNothing() {
+        when(repository.findByDateAndLatitudeAndLongitude(LocalDate.parse("2025-04-04"), 53.9, 27.6))
+                .thenReturn(Optional.of(sunriseSunset));
+
+        SunriseSunset result = sunriseSunsetService.create(
+                new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:41", "19:52"));
+
+        assertSame(sunriseSunset, result);
+        verify(repository, never()).save(any(SunriseSunset.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testCreateWithStoredKeyOverwritesTimes() {
+        when(repository.findByDateAndLatitudeAndLongitude(LocalDate.parse("2025-04-04"), 53.9, 27.6))
+                .thenReturn(Optional.of(sunriseSunset));
+        when(repository.save(any(SunriseSunset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SunriseSunset result = sunriseSunsetService.create(
+                new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:40", "19:53"));
+
+        assertEquals(1L, result.getId());
+        assertEquals("06:40", result.getSunrise());
+        verify(repository).save(sunriseSunset);
+        verify(eventPublisher).publishEvent(ChangeEvent.upsert(sunriseSunset));
+    }
+
+    @Test
+    void testCreateThatLosesTheInsertRaceOverwritesTheWinnersRow() {
+        when(repository.findByDateAndLatitudeAndLongitude(LocalDate.parse("2025-04-04"), 53.9, 27.6))
+                .thenReturn(Optional.empty()).thenReturn(Optional.of(sunriseSunset));
+        when(sunriseSunsetIds.reserve(1)).thenReturn(new long[]{7L});
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(0);
+        when(repository.save(any(SunriseSunset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SunriseSunset result = sunriseSunsetService.create(
+                new SunriseSunset(LocalDate.parse("2025-04-04"), 53.9, 27.6, "06:40", "19:53"));
+
+        assertSame(sunriseSunset, result);
+        assertEquals(1L, result.getId());
+        assertEquals("06:40", result.getSunrise());
+        verify(eventPublisher).publishEvent(ChangeEvent.upsert(sunriseSunset));
+    }
+
+    @Test
+    void testCreateWithoutNaturalKeyIsSavedAsANewRow() {
+        when(repository.save(any(SunriseSunset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        sunriseSunsetService.create(new SunriseSunset(null, 53.9, 27.6, "06:40", "19:53"));
+
+        verify(repository, never()).findByDateAndLatitudeAndLongitude(any(), any(), any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testUpdateInvalidatesOldAndNewDates() {
+        Location location = new Location("Minsk", "Belarus", 53.9, 27.6);
+        location.setId(1L);
+        location.getSunriseSunsets().add(sunriseSunset);
+        locationCache.put("location_1", List.of(location));
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-04", List.of(sunriseSunset));
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-05", List.of());
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-06", List.of());
+        when(repository.findById(1L)).thenReturn(Optional.of(sunriseSunset));
+        when(repository.save(any(SunriseSunset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        sunriseSunsetService.update(1L, new SunriseSunset(LocalDate.parse("2025-04-05"), 53.9, 27.6, "06:38", "19:55"));
+
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-05"));
+        assertNotNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-06"));
+        assertNull(locationCache.get("location_1"));
+    }
+
+    @Test
+    void testDeleteInvalidatesDeletedDate() {
+        sunriseSunsetCache.put("sunrise_sunsets_date_2025-04-04", List.of(sunriseSunset));
+        when(repository.findById(1L)).thenReturn(Optional.of(sunriseSunset));
+
+        sunriseSunsetService.delete(1L);
+
+        verify(repository).delete(sunriseSunset);
+        verify(eventPublisher).publishEvent(ChangeEvent.deleted(ChangeEvent.SUNRISE_SUNSET, 1L));
+        assertNull(sunriseSunsetCache.get("sunrise_sunsets_date_2025-04-04"));
+    }
+}
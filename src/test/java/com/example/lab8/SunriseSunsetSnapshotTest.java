@@ -0,0 +1,156 @@
+package com.example.lab8.service;
+
+import com.example.lab8.model.SunriseSunset;
+import com.example.lab8.repository.SunriseSunsetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetSnapshotTest {
+
+    private static final LocalDate JUNE_1 = LocalDate.of(2025, 6, 1);
+    private static final LocalDate JUNE_2 = LocalDate.of(2025, 6, 2);
+
+    @Mock
+    private SunriseSunsetRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SunriseSunsetSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new SunriseSunsetSnapshot(repository, transactionManager);
+    }
+
+    @Test
+    void testDaylightAggregatesPerCoordinateWithinRange() {
+        stubRows();
+
+        SunriseSunsetSnapshot.DaylightColumns columns = snapshot.daylight(JUNE_1, LocalDate.of(2025, 6, 30));
+
+        assertEquals(3, columns.rows());
+        assertEquals(2, columns.days().length);
+        assertEquals(53.9f, columns.latitudes()[0]);
+        assertArrayEquals(new int[]{2, 1}, columns.days());
+        assertArrayEquals(new int[]{1020, 990}, columns.minMinutes());
+        assertArrayEquals(new int[]{1023, 990}, columns.maxMinutes());
+        assertArrayEquals(new long[]{2043, 990}, columns.totalMinutes());
+    }
+
+    @Test
+    void testWritesAreFoldedInWithoutReloading() {
+        stubRows();
+        assertEquals(4, snapshot.size());
+
+        SunriseSunset moved = new SunriseSunset(JUNE_1, 40.71, -74.01, "09:25", "00:30");
+        moved.setId(3L);
+        snapshot.upsert(moved);
+        snapshot.remove(4L);
+
+        SunriseSunsetSnapshot.DaylightColumns columns = snapshot.daylight(JUNE_1, JUNE_2);
+        assertEquals(3, snapshot.size());
+        assertEquals(3, columns.days().length);
+        assertEquals(0, columns.days()[1]);
+        // 09:25 to 00:30 UTC the next day.
+        assertEquals(905, columns.maxMinutes()[2]);
+        verify(repository, times(1)).streamColumns();
+
+        snapshot.invalidate();
+        assertEquals(4, snapshot.size());
+        verify(repository, times(2)).streamColumns();
+    }
+
+    @Test
+    void testInvalidationDuringLoadDiscardsThatLoad() {
+        when(repository.count()).thenReturn(1L);
+        when(repository.streamColumns()).thenAnswer(invocation -> {
+            // A write commits and invalidates while the first load is reading.
+            snapshot.invalidate();
+            return Stream.<Object[]>of(new Object[]{1L, JUNE_1, 53.9, 27.56, "01:40", "18:40"});
+        }).thenAnswer(invocation -> Stream.of(
+                new Object[]{1L, JUNE_1, 53.9, 27.56, "01:40", "18:40"},
+                new Object[]{2L, JUNE_2, 53.9, 27.56, "01:39", "18:42"}));
+
+        assertEquals(2, snapshot.size());
+        verify(repository, times(2)).streamColumns();
+    }
+
+    @Test
+    void testManyWritesMatchAFreshLoad() {
+        when(repository.count()).thenReturn(0L);
+        when(repository.streamColumns()).thenAnswer(invocation -> Stream.empty());
+        assertEquals(0, snapshot.size());
+
+        // Enough churn to go through several compactions; ids arrive out of order.
+        Map<Long, SunriseSunset> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(5_000);
+            if (random.nextInt(4) == 0) {
+                snapshot.remove(id);
+                expected.remove(id);
+            } else {
+                SunriseSunset row = new SunriseSunset(JUNE_1.plusDays(random.nextInt(3)), 53.9 + random.nextInt(3),
+                        27.56, "03:" + (10 + random.nextInt(50)), "20:00");
+                row.setId(id);
+                snapshot.upsert(row);
+                expected.put(id, row);
+            }
+            if (i % 97 == 0) {
+                assertEquals(expected.size(), snapshot.size());
+            }
+        }
+        SunriseSunsetSnapshot.DaylightColumns folded = snapshot.daylight(JUNE_1, JUNE_2);
+
+        when(repository.streamColumns()).thenAnswer(invocation -> expected.values().stream()
+                .map(row -> new Object[]{row.getId(), row.getDate(), row.getLatitude(), row.getLongitude(),
+                        row.getSunrise(), row.getSunset()}));
+        SunriseSunsetSnapshot reloaded = new SunriseSunsetSnapshot(repository, transactionManager);
+        SunriseSunsetSnapshot.DaylightColumns fresh = reloaded.daylight(JUNE_1, JUNE_2);
+
+        assertEquals(expected.size(), snapshot.size());
+        assertEquals(fresh.rows(), folded.rows());
+        assertEquals(sum(fresh.totalMinutes()), sum(folded.totalMinutes()));
+        verify(repository, times(2)).streamColumns();
+    }
+
+    @Test
+    void testMinuteOfDayRejectsMalformedTimes() {
+        assertEquals(401, SunriseSunsetSnapshot.minuteOfDay("06:41"));
+        assertEquals(-1, SunriseSunsetSnapshot.minuteOfDay("6:41"));
+        assertEquals(-1, SunriseSunsetSnapshot.minuteOfDay("24:00"));
+        assertEquals(-1, SunriseSunsetSnapshot.minuteOfDay(null));
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private void stubRows() {
+        when(repository.count()).thenReturn(4L);
+        when(repository.streamColumns()).thenAnswer(invocation -> Stream.of(
+                new Object[]{1L, JUNE_1, 53.9, 27.56, "01:40", "18:40"},
+                new Object[]{2L, JUNE_2, 53.9, 27.56, "01:39", "18:42"},
+                new Object[]{3L, JUNE_1, 51.5, -0.12, "03:45", "20:15"},
+                new Object[]{4L, LocalDate.of(2025, 7, 1), 51.5, -0.12, "03:50", "20:20"}));
+    }
+}
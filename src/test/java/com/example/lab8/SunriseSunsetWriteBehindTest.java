@@ -0,0 +1,240 @@
+package com.example.lab8.service;
+
+import com.example.lab8.exception.ServiceUnavailableException;
+import com.example.lab8.model.SunriseSunset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SunriseSunsetWriteBehindTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private SunriseSunsetIds sunriseSunsetIds;
+
+    @Mock
+    private SunriseSunsetService sunriseSunsetService;
+
+    @Mock
+    private ResultSet storedKey;
+
+    private final AtomicLong nextId = new AtomicLong(100);
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private SunriseSunsetWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(sunriseSunsetIds.reserve(anyInt())).thenAnswer(invocation -> LongStream
+                .generate(nextId::incrementAndGet).limit(invocation.<Integer>getArgument(0)).toArray());
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehind.stop();
+    }
+
+    @Test
+    void testQueuedCreatesAreWrittenInOneBatchOnceBatchSizeIsReached() {
+        writeBehind = writeBehind(10, 3, Duration.ofSeconds(30));
+        recordBatches();
+
+        List<CompletableFuture<SunriseSunset>> written = List.of(
+                writeBehind.submit(sunriseSunset("2025-04-04", "06:41")),
+                writeBehind.submit(sunriseSunset("2025-04-05", "06:39")),
+                writeBehind.submit(sunriseSunset("2025-04-06", "06:37")));
+
+        assertEquals(List.of(101L, 102L, 103L), written.stream().map(f -> f.join().getId()).toList());
+        assertEquals(List.of(3), batchSizes);
+        verify(sunriseSunsetService).created(argThat(rows -> rows.size() == 3));
+        assertEquals(3L, writeBehind.getStatistics().get("writtenRows"));
+    }
+
+    @Test
+    void testQueuedAcknowledgementReturnsBeforeTheRowIsWritten() {
+        writeBehind = writeBehind(10, 100, Duration.ofSeconds(30));
+        recordBatches();
+
+        SunriseSunset queued = sunriseSunset("06:41");
+        SunriseSunset accepted = writeBehind.create(queued, false);
+
+        assertNotSame(queued, accepted);
+        assertNull(accepted.getId(), "the id is assigned when the batch is written");
+        assertTrue(batchSizes.isEmpty(), "waits for the batch to fill or the delay to pass");
+        writeBehind.stop();
+        assertEquals(List.of(1), batchSizes, "stopping flushes what is still queued");
+    }
+
+    @Test
+    void testFailedBatchIsRetriedRowByRow() {
+        writeBehind = writeBehind(10, 2, Duration.ofSeconds(30));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            if (rows.stream().anyMatch(row -> row[5] == null)) {
+                throw new DataIntegrityViolationException("sunset is required");
+            }
+            return new int[rows.size()];
+        });
+
+        CompletableFuture<SunriseSunset> good = writeBehind.submit(sunriseSunset("06:41"));
+        SunriseSunset invalid = sunriseSunset("2025-04-05", "06:39");
+        invalid.setSunset(null);
+        CompletableFuture<SunriseSunset> bad = writeBehind.submit(invalid);
+
+        assertNotNull(good.join().getId());
+        CompletionException failure = assertThrows(CompletionException.class, bad::join);
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        verify(sunriseSunsetService).created(List.of(good.join()));
+        assertEquals(1L, writeBehind.getStatistics().get("failedRows"));
+        assertEquals(1L, writeBehind.getStatistics().get("writtenRows"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchIsUpsertedOnTheNaturalKey() throws Exception {
+        writeBehind = writeBehind(10, 3, Duration.ofSeconds(30));
+        recordBatches();
+        SunriseSunset stored = new SunriseSunset(LocalDate.parse("2025-04-05"), 53.9, 27.6, "06:40", "19:55");
+        stored.setId(7L);
+        when(storedKey.getObject(1, LocalDate.class)).thenReturn(stored.getDate());
+        when(storedKey.getDouble(2)).thenReturn(53.9);
+        when(storedKey.getDouble(3)).thenReturn(27.6);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(2).processRow(storedKey);
+            return null;
+        }).when(namedJdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        when(sunriseSunsetService.create(argThat(row -> row.getDate().equals(stored.getDate())))).thenReturn(stored);
+
+        CompletableFuture<SunriseSunset> first = writeBehind.submit(sunriseSunset("06:41"));
+        CompletableFuture<SunriseSunset> second = writeBehind.submit(sunriseSunset("06:42"));
+        CompletableFuture<SunriseSunset> update = writeBehind.submit(sunriseSunset("2025-04-05", "06:39"));
+
+        // Both records for the new key share one inserted row carrying the later times.
+        assertSame(first.join(), second.join());
+        assertEquals("06:42", first.join().getSunrise());
+        assertEquals(101L, first.join().getId());
+        assertSame(stored, update.join());
+        assertEquals(List.of(1), batchSizes);
+        verify(sunriseSunsetService).created(List.of(first.join()));
+        assertEquals(2L, writeBehind.getStatistics().get("writtenRows"));
+    }
+
+    @Test
+    void testFullQueueRejectsAfterOfferTimeout() throws InterruptedException {
+        writeBehind = writeBehind(1, 1, Duration.ZERO);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[1];
+        });
+
+        writeBehind.submit(sunriseSunset("06:41"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        writeBehind.submit(sunriseSunset("06:42"));
+
+        assertThrows(ServiceUnavailableException.class, () -> writeBehind.submit(sunriseSunset("06:43")));
+        assertEquals(1L, writeBehind.getStatistics().get("rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void testSubmitsAreRejectedOnceStoppingHasBegun() throws InterruptedException {
+        writeBehind = writeBehind(10, 1, Duration.ZERO);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[1];
+        });
+        CompletableFuture<SunriseSunset> queued = writeBehind.submit(sunriseSunset("06:41"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        Thread stopping = new Thread(writeBehind::stop);
+        stopping.start();
+        while (writeBehind.isRunning()) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> writeBehind.submit(sunriseSunset("06:42")));
+        release.countDown();
+        stopping.join(5000);
+        assertNotNull(queued.join().getId(), "records queued before stop are still written");
+        assertThrows(ServiceUnavailableException.class, () -> writeBehind.submit(sunriseSunset("06:43")));
+    }
+
+    @Test
+    void testStopsAfterTheWebServer() {
+        writeBehind = writeBehind(10, 1, Duration.ZERO);
+
+        // The servlet web server stops at SMART_LIFECYCLE_PHASE - 1024; lower phases stop later.
+        assertTrue(writeBehind.getPhase() < WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1024);
+    }
+
+    private SunriseSunsetWriteBehind writeBehind(int capacity, int batchSize, Duration maxDelay) {
+        SunriseSunsetWriteBehind started = new SunriseSunsetWriteBehind(jdbcTemplate, namedJdbcTemplate, transactionTemplate,
+                sunriseSunsetIds, sunriseSunsetService, true, capacity, batchSize, maxDelay, Duration.ofMillis(50),
+                Duration.ofSeconds(5));
+        started.start();
+        return started;
+    }
+
+    private void recordBatches() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            batchSizes.add(rows.size());
+            return new int[rows.size()];
+        });
+    }
+
+    private static SunriseSunset sunriseSunset(String sunrise) {
+        return sunriseSunset("2025-04-04", sunrise);
+    }
+
+    private static SunriseSunset sunriseSunset(String date, String sunrise) {
+        return new SunriseSunset(LocalDate.parse(date), 53.9, 27.6, sunrise, "19:52");
+    }
+}